@@ -14,11 +14,12 @@ package br.com.c8tech.jlib.i18n.apt;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
@@ -33,6 +34,7 @@ import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
 
 import org.jooq.lambda.tuple.Tuple2;
@@ -45,67 +47,73 @@ public abstract class AbstractHierarchyAnnotationProcessor<M extends TypeAnnotat
         return Set.of(ElementKind.INTERFACE, ElementKind.CLASS);
     }
 
-    private Set<M> collectMethodDescriptorForAnnotation(
-            ExecutableElement pMethodElement,
-            Class<? extends Annotation> pAnnotation) {
+    /**
+     * Visits the methods declared by the type once, reading the annotation
+     * mirrors of each method a single time. Invalid methods are reported on
+     * their element and left out, and once every method was checked the type
+     * is rejected if any of them was invalid.
+     */
+    private Set<M> collectMethodDescriptors(TypeElement pTargetElement,
+            Map<String, Class<? extends Annotation>> pChildrenAnnotations,
+            Map<String, Class<? extends Annotation>> pContainerAnnotations) {
 
-        Set<M> descriptorsPerAnnotation = new HashSet<>(1);
-
-        Optional<Map<? extends ExecutableElement, ? extends AnnotationValue>> rawValuesOpt = filterMethodAnnotations(
-                pMethodElement, pAnnotation);
-        if (rawValuesOpt.isPresent()) {
-            Map<String, Object> values = rawValuesOpt.get().entrySet().stream()
-                    .collect(Collectors.toMap(
-                            ek -> ek.getKey().getSimpleName().toString(),
-                            ev -> ev.getValue().getValue(), (a, b) -> a,
-                            TreeMap::new));
-            M methodDescr = createMethodAnnotatedDescriptor(values,
-                    TypeAnnotatedMethodDescriptor.builder()
-                            .annotationName(pAnnotation.getCanonicalName())
-                            .methodElement(pMethodElement)
-                            .name(pMethodElement.getSimpleName().toString())
-                            .qualifiedReturnType(pMethodElement.getReturnType())
-                            .qualifiedParameterTypes(
-                                    pMethodElement.getParameters())
-                            .build());
-            if (!isValidMethodCandidate(methodDescr, pMethodElement)) {
-                throw new AnnotationProcessException(
-                        "The method annotated with " + pAnnotation.getName()
-                                + "is not valid");
+        Set<M> methodDescriptors = new HashSet<>();
+        boolean valid = true;
+        for (ExecutableElement methodElement : ElementFilter
+                .methodsIn(pTargetElement.getEnclosedElements())) {
+            for (AnnotationMirror mirror : methodElement
+                    .getAnnotationMirrors()) {
+                String name = ((TypeElement) mirror.getAnnotationType()
+                        .asElement()).getQualifiedName().toString();
+
+                Class<? extends Annotation> annotation = pChildrenAnnotations
+                        .get(name);
+                if (annotation != null) {
+                    valid &= addMethodDescriptor(methodDescriptors,
+                            extractMethodDescriptor(methodElement, mirror,
+                                    annotation));
+                    continue;
+                }
+
+                // deal with the annotation container (for repetitions)
+                annotation = pContainerAnnotations.get(name);
+                if (annotation != null) {
+                    for (AnnotationValue value : mirror.getElementValues()
+                            .values()) {
+                        if (value.getValue() instanceof List) {
+                            for (Object repeated : (List<?>) value
+                                    .getValue()) {
+                                valid &= addMethodDescriptor(
+                                        methodDescriptors,
+                                        extractMethodDescriptor(
+                                                methodElement,
+                                                (AnnotationMirror) ((AnnotationValue) repeated)
+                                                        .getValue(),
+                                                annotation));
+                            }
+                        }
+                    }
+                }
             }
-            descriptorsPerAnnotation.add(methodDescr);
         }
-        return descriptorsPerAnnotation;
-
+        if (!valid) {
+            throw new AnnotationProcessException("The "
+                    + pTargetElement.getSimpleName()
+                    + " was not generated because some of its methods are not valid.");
+        }
+        return methodDescriptors;
     }
 
-    private Set<M> collectMethodDescriptorsForAnnotationContainer(
-            ExecutableElement pMethodElement,
-            Class<? extends Annotation> pContainerAnnotation,
-            Class<? extends Annotation> pAnnotation) {
-        Set<M> descriptorsPerAnnotation = new HashSet<>();
-
-        Optional<AnnotationValue> rawValueOpt = filterMethodAnnotations(
-                pMethodElement, pContainerAnnotation)
-                        .flatMap(a -> a.values().stream().findFirst());
-        if (rawValueOpt.isPresent()
-                && rawValueOpt.get().getValue() instanceof List) {
-
-            List<AnnotationValue> anns = ((List<?>) rawValueOpt.get()
-                    .getValue())
-                            .stream()
-                            .filter(o -> AnnotationValue.class
-                                    .isAssignableFrom(o.getClass()))
-                            .map(o -> (AnnotationValue) o)
-                            .collect(Collectors.toList());
-
-            anns.stream()
-                    .forEach(ann -> descriptorsPerAnnotation
-                            .add(extractMethodDescriptors(pMethodElement, ann,
-                                    pAnnotation)));
-
+    /**
+     * @return false if the method was not valid and had no descriptor.
+     */
+    private static <M> boolean addMethodDescriptor(Set<M> pDescriptors,
+            M pDescriptor) {
+        if (pDescriptor == null) {
+            return false;
         }
-        return descriptorsPerAnnotation;
+        pDescriptors.add(pDescriptor);
+        return true;
     }
 
     private T collectTypeAnnotateDescriptor(TypeElement pTargetElement,
@@ -124,6 +132,10 @@ public abstract class AbstractHierarchyAnnotationProcessor<M extends TypeAnnotat
                 .targetType(pTargetElement).build());
     }
 
+    /**
+     * @return the descriptor of the method, or null if the method is not
+     *         valid, in which case the errors were reported on it.
+     */
     protected abstract M createMethodAnnotatedDescriptor(
             Map<String, Object> pAnnotationValues,
             TypeAnnotatedMethodDescriptor pTypeAnnotatedMethodDescriptor);
@@ -159,15 +171,19 @@ public abstract class AbstractHierarchyAnnotationProcessor<M extends TypeAnnotat
         return false;
     }
 
-    private M extractMethodDescriptors(ExecutableElement pMethodElement,
-            AnnotationValue pAnnotationValue,
+    /**
+     * @return the descriptor of the method, or null if the errors of the
+     *         method were reported.
+     */
+    private M extractMethodDescriptor(ExecutableElement pMethodElement,
+            AnnotationMirror pAnnotationMirror,
             Class<? extends Annotation> pAnnotation) {
 
-        Map<? extends ExecutableElement, ? extends AnnotationValue> rawValuesOpt = processingEnv
-                .getElementUtils().getElementValuesWithDefaults(
-                        (AnnotationMirror) pAnnotationValue.getValue());
+        Map<? extends ExecutableElement, ? extends AnnotationValue> rawValues = processingEnv
+                .getElementUtils()
+                .getElementValuesWithDefaults(pAnnotationMirror);
 
-        Map<String, Object> values = rawValuesOpt.entrySet().stream()
+        Map<String, Object> values = rawValues.entrySet().stream()
                 .collect(Collectors.toMap(
                         ek -> ek.getKey().getSimpleName().toString(),
                         ev -> ev.getValue().getValue(), (a, b) -> a,
@@ -182,28 +198,14 @@ public abstract class AbstractHierarchyAnnotationProcessor<M extends TypeAnnotat
                         .qualifiedParameterTypes(pMethodElement.getParameters())
                         .build());
 
-        if (!isValidMethodCandidate(methodDescr, pMethodElement)) {
-            throw new AnnotationProcessException("The method annotated with "
-                    + pAnnotation.getName() + "is not valid");
-        } else {
-            return methodDescr;
+        if (methodDescr == null
+                || !isValidMethodCandidate(methodDescr, pMethodElement)) {
+            return null;
         }
+        return methodDescr;
 
     }
 
-    private Optional<Map<? extends ExecutableElement, ? extends AnnotationValue>> filterMethodAnnotations(
-            ExecutableElement pMethodElement,
-            Class<? extends Annotation> pAnnotation) {
-
-        TypeElement anType = processingEnv.getElementUtils()
-                .getTypeElement(pAnnotation.getCanonicalName());
-
-        return pMethodElement.getAnnotationMirrors().stream().filter(
-                a -> a.getAnnotationType().toString().equals(anType.toString()))
-                .findFirst().map(ann -> processingEnv.getElementUtils()
-                        .getElementValuesWithDefaults(ann));
-    }
-
     protected abstract Set<Tuple2<Class<? extends Annotation>, Class<? extends Annotation>>> getChildrenAnnotationTypes();
 
     protected abstract Class<? extends Annotation> getParentAnnotationType();
@@ -259,61 +261,80 @@ public abstract class AbstractHierarchyAnnotationProcessor<M extends TypeAnnotat
     public boolean process(Set<? extends TypeElement> pAnnotations,
             final RoundEnvironment pRoundEnvironment) {
 
-        Set<M> methodDescriptors = new HashSet<>();
-
-        getChildrenAnnotationTypes().stream().forEach(t -> {
-            // deal with the annotation container (for repetitions)
+        // index the child and container annotations by name, so each
+        // annotation mirror is matched with a single lookup.
+        Map<String, Class<? extends Annotation>> childrenAnnotations = new HashMap<>();
+        Map<String, Class<? extends Annotation>> containerAnnotations = new HashMap<>();
+        for (Tuple2<Class<? extends Annotation>, Class<? extends Annotation>> t : getChildrenAnnotationTypes()) {
+            childrenAnnotations.put(t.v1.getCanonicalName(), t.v1);
             if (t.v2 != null) {
-                Set<M> md2 = pRoundEnvironment.getElementsAnnotatedWith(t.v2)
-                        .stream().filter(e -> e instanceof ExecutableElement)
-                        .flatMap(
-                                e -> collectMethodDescriptorsForAnnotationContainer(
-                                        (ExecutableElement) e, t.v2, t.v1)
-                                                .stream())
-                        .collect(Collectors.toSet());
-                methodDescriptors.addAll(md2);
+                containerAnnotations.put(t.v2.getCanonicalName(), t.v1);
             }
-
-            // deal with annotations that have no repetitions
-            Set<M> md1 = pRoundEnvironment.getElementsAnnotatedWith(t.v1)
-                    .stream().filter(e -> e instanceof ExecutableElement)
-                    .flatMap(e -> collectMethodDescriptorForAnnotation(
-                            (ExecutableElement) e, t.v1).stream())
-                    .collect(Collectors.toSet());
-            methodDescriptors.addAll(md1);
-
-        });
+        }
 
         // start processing the elements tagged with the parent
-        // annotation
-        Set<? extends Element> rootElements = pRoundEnvironment
-                .getElementsAnnotatedWith(getParentAnnotationType());
-        Optional<? extends Element> targetElementOpt = rootElements.stream()
-                .findFirst();
-        targetElementOpt.ifPresent(targetElement -> {
-
-            if (!(targetElement instanceof TypeElement)
-                    || !isTargetTypeElementValid((TypeElement) targetElement)) {
-                throw new AnnotationProcessException("The "
-                        + targetElement.getSimpleName() + "annotated with "
-                        + getParentAnnotationType().getName()
-                        + " is not valid.");
-
+        // annotation. A type that fails is reported and skipped, so the
+        // other types of the round are still processed.
+        List<T> typeDescriptors = new ArrayList<>();
+        for (Element targetElement : pRoundEnvironment
+                .getElementsAnnotatedWith(getParentAnnotationType())) {
+
+            if (!(targetElement instanceof TypeElement)) {
+                error("The annotation '" + getParentAnnotationType()
+                        + "' can be used only on " + allowedTypeKinds(),
+                        targetElement);
+                continue;
+            }
+            if (!isTargetTypeElementValid((TypeElement) targetElement)) {
+                continue;
+            }
+            T typeDescriptor;
+            try {
+                typeDescriptor = collectTypeAnnotateDescriptor(
+                        (TypeElement) targetElement, getParentAnnotationType(),
+                        collectMethodDescriptors((TypeElement) targetElement,
+                                childrenAnnotations, containerAnnotations));
+            } catch (AnnotationProcessException e) {
+                error(e.getMessage(), targetElement);
+                continue;
+            } catch (RuntimeException e) {
+                error("An error have occurred while processing the element tagged with annotation '"
+                        + getParentAnnotationType().getCanonicalName() + "'!",
+                        targetElement, e);
+                continue;
             }
-            T typeDescriptor = collectTypeAnnotateDescriptor(
-                    (TypeElement) targetElement, getParentAnnotationType(),
-                    methodDescriptors);
             if (typeDescriptor == null) {
                 error("An error have occurred while processing the element tagged with annotation '"
                         + getParentAnnotationType().getCanonicalName() + "'!",
                         targetElement);
+            } else {
+                typeDescriptors.add(typeDescriptor);
             }
-            processed = processMessageBundleDescriptor(typeDescriptor);
-
-        });
+        }
+        if (!typeDescriptors.isEmpty()) {
+            processed = processTypeAnnotatedDescriptors(typeDescriptors);
+        }
         return processed;
     }
 
     protected abstract boolean processMessageBundleDescriptor(T interfaceInfo);
 
+    /**
+     * Processes the descriptors of all types found in a round. Their
+     * collection is done sequentially because the processing environment is
+     * not thread safe, but subclasses may process them concurrently as long
+     * as they do not use it from other threads.
+     *
+     * @param pDescriptors
+     *                         the descriptors collected in the round.
+     * @return true if all of them were processed successfully.
+     */
+    protected boolean processTypeAnnotatedDescriptors(List<T> pDescriptors) {
+        boolean result = true;
+        for (T descriptor : pDescriptors) {
+            result &= processMessageBundleDescriptor(descriptor);
+        }
+        return result;
+    }
+
 }
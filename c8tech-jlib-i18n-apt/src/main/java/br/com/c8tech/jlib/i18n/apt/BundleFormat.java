@@ -0,0 +1,43 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.apt;
+
+/**
+ * The resources generated for each message bundle, chosen by the
+ * {@code Bundle.format} processor option.
+ */
+public enum BundleFormat {
+
+    /**
+     * Only the compact binary resource read by
+     * {@link br.com.c8tech.jlib.i18n.CompactBundle}.
+     */
+    BINARY,
+
+    /**
+     * Both the properties files and the compact binary resource.
+     */
+    BOTH,
+
+    /**
+     * Only one properties file per locale. This is the default.
+     */
+    PROPERTIES;
+
+    public boolean emitsBinary() {
+        return this != PROPERTIES;
+    }
+
+    public boolean emitsProperties() {
+        return this != BINARY;
+    }
+}
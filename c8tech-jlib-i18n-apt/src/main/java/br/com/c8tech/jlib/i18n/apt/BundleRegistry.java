@@ -0,0 +1,164 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.apt;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import br.com.c8tech.jlib.i18n.MessageBundleRegistry;
+
+/**
+ * The {@link MessageBundleRegistry} of the bundles generated in a round. The
+ * names and locales of the bundles are generated as constant arrays, which
+ * class data sharing archives as they are, and the implementations are
+ * referenced directly, so nothing is looked up by name at run time.
+ */
+final class BundleRegistry {
+
+    /**
+     * The resource registering the generated registry with the
+     * {@link java.util.ServiceLoader}.
+     */
+    static final String SERVICE_RESOURCE = "META-INF/services/"
+            + MessageBundleRegistry.class.getName();
+
+    private final List<GeneratedBundle> bundles;
+
+    private final ClassName className;
+
+    /**
+     * @param pClassName
+     *                       the registry class to generate.
+     * @param pBundles
+     *                       the bundles generated without errors.
+     */
+    BundleRegistry(ClassName pClassName, List<GeneratedBundle> pBundles) {
+        className = pClassName;
+        bundles = pBundles.stream()
+                .sorted(Comparator.comparing(
+                        b -> b.getDescriptor().qualifiedName()))
+                .collect(Collectors.toList());
+    }
+
+    private static CodeBlock generateStringArray(List<String> pValues) {
+        return CodeBlock.of("{ $L }",
+                pValues.stream().map(v -> CodeBlock.of("$S", v))
+                        .collect(CodeBlock.joining(", ")));
+    }
+
+    ClassName getClassName() {
+        return className;
+    }
+
+    /**
+     * Generates the registry class.
+     *
+     * @return the source of the class.
+     */
+    JavaFile generateSource() {
+        ParameterizedTypeName stringList = ParameterizedTypeName
+                .get(List.class, String.class);
+        ParameterizedTypeName futureType = ParameterizedTypeName
+                .get(CompletableFuture.class, Void.class);
+
+        CodeBlock.Builder preloads = CodeBlock.builder();
+        for (int i = 0; i < bundles.size(); i++) {
+            MessageBundleDescriptor<MessageBundleMethodDescriptor> descriptor = bundles
+                    .get(i).getDescriptor();
+            ClassName implName = ClassName.get(descriptor.packageName(),
+                    descriptor.simpleName() + "Impl");
+            preloads.add(i == 0 ? "\n" : ",\n");
+            if (bundles.get(i).isPreloadable()) {
+                preloads.add("$T.preload(pExecutor, pLocales)", implName);
+            } else {
+                // the bundle declares its own preload method, so its tables
+                // are loaded by creating an instance per locale.
+                preloads.add(
+                        "$T.runAsync(() -> $T.stream(pLocales).forEach($T::new), pExecutor)",
+                        CompletableFuture.class, Arrays.class,
+                        implName);
+            }
+        }
+
+        TypeSpec.Builder registry = TypeSpec.classBuilder(className)
+                .addJavadoc(
+                        "The message bundles generated by the compilation and their locales.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(MessageBundleRegistry.class)
+                .addField(FieldSpec
+                        .builder(String[].class, "BUNDLE_NAMES",
+                                Modifier.PRIVATE, Modifier.STATIC,
+                                Modifier.FINAL)
+                        .initializer(generateStringArray(bundles.stream()
+                                .map(b -> b.getDescriptor().qualifiedName())
+                                .collect(Collectors.toList())))
+                        .build())
+                .addField(FieldSpec
+                        .builder(String[][].class, "LANGUAGE_TAGS",
+                                Modifier.PRIVATE, Modifier.STATIC,
+                                Modifier.FINAL)
+                        .initializer("{ $L }", bundles.stream()
+                                .map(b -> generateStringArray(
+                                        b.getLanguageTags()))
+                                .collect(CodeBlock.joining(", ")))
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("getBundleNames")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC).returns(stringList)
+                        .addStatement("return $T.of(BUNDLE_NAMES)", List.class)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("getLanguageTags")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC).returns(stringList)
+                        .addParameter(String.class, "pBundleName")
+                        .beginControlFlow(
+                                "for (int i = 0; i < BUNDLE_NAMES.length; i++)")
+                        .beginControlFlow(
+                                "if (BUNDLE_NAMES[i].equals(pBundleName))")
+                        .addStatement("return $T.of(LANGUAGE_TAGS[i])",
+                                List.class)
+                        .endControlFlow().endControlFlow()
+                        .addStatement("return $T.of()", List.class).build())
+                .addMethod(MethodSpec.methodBuilder("preload")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC).returns(futureType)
+                        .addParameter(Executor.class, "pExecutor")
+                        .addParameter(Locale[].class, "pLocales")
+                        .varargs()
+                        .addStatement("return $T.allOf($>$L$<)",
+                                CompletableFuture.class, preloads.build())
+                        .build());
+        bundles.forEach(b -> registry
+                .addOriginatingElement(b.getDescriptor().targetType()));
+        return JavaFile.builder(className.packageName(), registry.build())
+                .build();
+    }
+
+    boolean isEmpty() {
+        return bundles.isEmpty();
+    }
+}
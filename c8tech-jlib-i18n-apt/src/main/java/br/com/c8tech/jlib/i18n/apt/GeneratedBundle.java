@@ -0,0 +1,130 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.apt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+
+import org.jooq.lambda.tuple.Tuple;
+import org.jooq.lambda.tuple.Tuple2;
+
+import com.squareup.javapoet.JavaFile;
+
+/**
+ * The output produced by {@link MessageBundleGenerator} for one message
+ * bundle. Nothing here touches the processing environment, so bundles can be
+ * generated concurrently and written afterwards through the {@code Filer}.
+ */
+final class GeneratedBundle {
+
+    /**
+     * A resource to be written to the class output. Like the implementation
+     * class, it originates only from the message bundle interface.
+     */
+    static final class Resource {
+
+        private final byte[] content;
+
+        private final String name;
+
+        Resource(String pName, byte[] pContent) {
+            name = pName;
+            content = pContent;
+        }
+
+        byte[] getContent() {
+            return content;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    private final MessageBundleDescriptor<MessageBundleMethodDescriptor> descriptor;
+
+    private final List<Tuple2<String, Element>> errors = new ArrayList<>(0);
+
+    private List<String> languageTags = List.of();
+
+    private boolean preloadable;
+
+    private final List<Resource> resources = new ArrayList<>();
+
+    private JavaFile source;
+
+    GeneratedBundle(
+            MessageBundleDescriptor<MessageBundleMethodDescriptor> pDescriptor) {
+        descriptor = pDescriptor;
+    }
+
+    void addError(String pMessage, Element pElement) {
+        errors.add(Tuple.tuple(pMessage, pElement));
+    }
+
+    void addResource(String pName, byte[] pContent) {
+        resources.add(new Resource(pName, pContent));
+    }
+
+    MessageBundleDescriptor<MessageBundleMethodDescriptor> getDescriptor() {
+        return descriptor;
+    }
+
+    List<Tuple2<String, Element>> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the locales of the bundle, the default one first.
+     */
+    List<String> getLanguageTags() {
+        return languageTags;
+    }
+
+    List<Resource> getResources() {
+        return resources;
+    }
+
+    /**
+     * @return the implementation class or null if it could not be generated.
+     */
+    JavaFile getSource() {
+        return source;
+    }
+
+    boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * @return true if the implementation class declares the static
+     *         {@code preload} methods, which a bundle declaring a method of
+     *         that name lacks.
+     */
+    boolean isPreloadable() {
+        return preloadable;
+    }
+
+    void setLanguageTags(List<String> pLanguageTags) {
+        languageTags = pLanguageTags;
+    }
+
+    void setPreloadable(boolean pPreloadable) {
+        preloadable = pPreloadable;
+    }
+
+    void setSource(JavaFile pSource) {
+        source = pSource;
+    }
+}
@@ -11,7 +11,11 @@
  */
 package br.com.c8tech.jlib.i18n.apt;
 
+import java.util.List;
+
 import org.immutables.value.Value;
+
+import com.squareup.javapoet.TypeName;
 import org.immutables.value.Value.Style.ImplementationVisibility;
 
 import br.com.c8tech.jlib.i18n.apt.ImmutableMessageBundleDescriptor.Builder;
@@ -27,8 +31,27 @@ public interface MessageBundleDescriptor<M extends MessageBundleMethodDescriptor
         return ImmutableMessageBundleDescriptor.builder();
     }
 
+    public BundleFormat getBundleFormat();
+
+    public String getDefaultLocale();
+
+    /**
+     * @return the other locales declared by the bundle. They get messages
+     *         even when no method declares one for them, inherited from their
+     *         parent locales.
+     */
+    public List<String> getLocales();
+
     public String getPropertiesBaseName();
 
+    /**
+     * @return whether the exceptions built by the bundle skip the stack trace
+     *         and format their message lazily.
+     */
+    public boolean isLightweightExceptions();
+
     public String getPropertiesBasePath();
 
+    public TypeName getTargetTypeName();
+
 }
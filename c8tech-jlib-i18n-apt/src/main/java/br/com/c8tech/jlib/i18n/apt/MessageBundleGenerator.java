@@ -0,0 +1,1543 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.apt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.lang.model.element.Modifier;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeSpec.Builder;
+
+import br.com.c8tech.jlib.i18n.AbstractMessageBundle;
+import br.com.c8tech.jlib.i18n.CompactBundle;
+import br.com.c8tech.jlib.i18n.CompactBundleWriter;
+import br.com.c8tech.jlib.i18n.Digits;
+import br.com.c8tech.jlib.i18n.FormatterPool;
+import br.com.c8tech.jlib.i18n.LazyMessage;
+import br.com.c8tech.jlib.i18n.LocaleCache;
+import br.com.c8tech.jlib.i18n.MessageBatch;
+import br.com.c8tech.jlib.i18n.MessageBundleMetrics;
+import br.com.c8tech.jlib.i18n.MessageBundleReloader;
+import br.com.c8tech.jlib.i18n.MessageTable;
+import br.com.c8tech.jlib.i18n.MessageTemplate;
+import br.com.c8tech.jlib.i18n.PluralCategory;
+import br.com.c8tech.jlib.i18n.PluralRules;
+import br.com.c8tech.jlib.i18n.Utf8;
+
+/**
+ * Generates the implementation class and the resources of a message bundle.
+ * <p>
+ * The descriptors carry everything taken from the processing environment, so
+ * the generator never calls it and may run for several bundles at once.
+ */
+final class MessageBundleGenerator {
+
+    /**
+     * The number of characters reserved for each argument when presizing the
+     * buffer of a generated message.
+     */
+    private static final int ARGUMENT_LENGTH_HINT = 16;
+
+    /**
+     * The number of elements of a static array set by each generated method,
+     * which keeps the methods far below the 64KB limit of the JVM on the code
+     * of a method.
+     */
+    private static final int ARRAY_CHUNK_SIZE = 2048;
+
+    /**
+     * The argument types written into sinks without converting them to a
+     * string first.
+     */
+    private static final Set<TypeName> CHARACTER_TYPES = Set.of(
+            ClassName.get(String.class), ClassName.get(CharSequence.class),
+            ClassName.get(StringBuilder.class));
+
+    /**
+     * The primitive argument types whose digits are written into sinks without
+     * converting them to a string first.
+     */
+    private static final Set<TypeName> INTEGRAL_TYPES = Set.of(TypeName.BYTE,
+            TypeName.SHORT, TypeName.INT, TypeName.LONG);
+
+    /**
+     * The primitive argument types a number format element formats without
+     * boxing them.
+     */
+    private static final Set<TypeName> NUMERIC_TYPES = Set.of(TypeName.BYTE,
+            TypeName.SHORT, TypeName.INT, TypeName.LONG, TypeName.FLOAT,
+            TypeName.DOUBLE);
+
+    private static final TypeName STRING = ClassName.get(String.class);
+
+    /**
+     * Returns the number of characters reserved for an argument of the given
+     * type, which is the longest text of primitive types.
+     */
+    private static int computeLengthHint(TypeName pType) {
+        if (pType.equals(TypeName.BOOLEAN)) {
+            return 5;
+        } else if (pType.equals(TypeName.CHAR)) {
+            return 1;
+        } else if (pType.equals(TypeName.BYTE)) {
+            return 4;
+        } else if (pType.equals(TypeName.SHORT)) {
+            return 6;
+        } else if (pType.equals(TypeName.INT)) {
+            return 11;
+        } else if (pType.equals(TypeName.LONG)) {
+            return 20;
+        }
+        return ARGUMENT_LENGTH_HINT;
+    }
+
+    private static String computeBinaryFileName(String pPropertiesBasePath,
+            String pPropertiesBaseName) {
+        return pPropertiesBasePath.concat("/").concat(pPropertiesBaseName)
+                .concat(CompactBundle.EXTENSION);
+    }
+
+    private static String computeHolderName(String pLanguageTag) {
+        return "Messages_" + pLanguageTag.replaceAll("[^A-Za-z0-9]", "_");
+    }
+
+    private static List<String> computeLanguageTags(
+            MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor) {
+
+        String defaultLocale = pMessageBundleDescriptor.getDefaultLocale();
+
+        // the default locale always comes first, so it can be used as the
+        // fallback branch of the generated methods.
+        Set<String> others = Stream
+                .concat(pMessageBundleDescriptor.getLocales().stream(),
+                        pMessageBundleDescriptor.methodDescriptors().stream()
+                                .map(MessageBundleMethodDescriptor::locale))
+                .filter(l -> !l.equals(defaultLocale))
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        List<String> languageTags = new ArrayList<>(others.size() + 1);
+        languageTags.add(defaultLocale);
+        languageTags.addAll(others);
+        return languageTags;
+    }
+
+    /**
+     * Returns the message templates of each locale, following the order of the
+     * language tags and, inside each locale, the order of the keys. Static
+     * messages are stored rendered, as {@link MessageTemplate#toTableEntry()}
+     * does.
+     */
+    private static List<List<String>> computeMessageTables(
+            List<String> pLanguageTags,
+            List<Map<String, MessageBundleMethodDescriptor>> pMethods) {
+
+        List<List<String>> tables = new ArrayList<>(pLanguageTags.size());
+        for (String languageTag : pLanguageTags) {
+            // parent messages were inherited already, so keys still missing
+            // are filled with the message of the default locale.
+            List<String> messages = new ArrayList<>(pMethods.size());
+            for (Map<String, MessageBundleMethodDescriptor> method : pMethods) {
+                messages.add(method.getOrDefault(languageTag,
+                        selectFallback(pLanguageTags, method)).template()
+                        .toTableEntry());
+            }
+            tables.add(messages);
+        }
+        return tables;
+    }
+
+    /**
+     * Returns, for each locale and key, the position of the locale whose
+     * message the table holds, so a reloaded file of a parent locale reaches
+     * the children that inherited its messages.
+     */
+    private static List<List<Integer>> computeMessageOrigins(
+            List<String> pLanguageTags,
+            List<Map<String, MessageBundleMethodDescriptor>> pMethods) {
+
+        List<List<Integer>> origins = new ArrayList<>(pLanguageTags.size());
+        for (String languageTag : pLanguageTags) {
+            List<Integer> localeOrigins = new ArrayList<>(pMethods.size());
+            for (Map<String, MessageBundleMethodDescriptor> method : pMethods) {
+                localeOrigins.add(indexOfLanguageTag(pLanguageTags,
+                        method.getOrDefault(languageTag,
+                                selectFallback(pLanguageTags, method))
+                                .locale()));
+            }
+            origins.add(localeOrigins);
+        }
+        return origins;
+    }
+
+    /**
+     * Returns the positions of the parent locales of each language tag, the
+     * nearest first, following the candidate locales of
+     * {@link ResourceBundle.Control}. The default locale is left out, since
+     * it is the last fallback of every locale.
+     */
+    private static List<List<Integer>> computeFallbackChains(
+            List<String> pLanguageTags) {
+
+        ResourceBundle.Control control = ResourceBundle.Control
+                .getNoFallbackControl(ResourceBundle.Control.FORMAT_DEFAULT);
+        List<List<Integer>> chains = new ArrayList<>(pLanguageTags.size());
+        for (String languageTag : pLanguageTags) {
+            List<Integer> chain = new ArrayList<>();
+            for (Locale candidate : control.getCandidateLocales("",
+                    Locale.forLanguageTag(languageTag))) {
+                int index = indexOfLanguageTag(pLanguageTags,
+                        candidate.toLanguageTag());
+                if (index > 0 && !chain.contains(index)
+                        && !pLanguageTags.get(index)
+                                .equalsIgnoreCase(languageTag)) {
+                    chain.add(index);
+                }
+            }
+            chains.add(chain);
+        }
+        return chains;
+    }
+
+    private static String computePropertiesFileName(String pLocale,
+            String pPropertiesBasePath, String pPropertiesBaseName) {
+        return pPropertiesBasePath.concat("/").concat(pPropertiesBaseName)
+                .concat("_").concat(pLocale).concat(".properties");
+    }
+
+    /**
+     * Generates an expression that renders the message template. The tokens
+     * of the template are appended into a presized {@link StringBuilder}, so
+     * nothing is parsed at run time and primitive arguments are appended
+     * without boxing. Untyped elements are always appended as they are, and
+     * only the typed ones go through the {@link FormatterPool}.
+     */
+    private static CodeBlock generateFormattingExpression(
+            MessageTemplate pTemplate, List<ParameterSpec> pParameters) {
+
+        CodeBlock.Builder appends = CodeBlock.builder();
+        int lengthHint = pTemplate.getLiteralLength();
+        boolean hasArguments = false;
+        for (MessageTemplate.Token token : pTemplate.getTokens()) {
+            if (token.isArgument()) {
+                ParameterSpec parameter = pParameters
+                        .get(token.getArgumentIndex());
+                appends.add(".append($L)",
+                        generateTokenValue(token, pParameters));
+                lengthHint += token.isTyped() ? ARGUMENT_LENGTH_HINT
+                        : computeLengthHint(parameter.type);
+                hasArguments = true;
+            } else {
+                appends.add(".append($S)", token.getText());
+            }
+        }
+
+        if (!hasArguments) {
+            return CodeBlock.of("$S", pTemplate.format(Locale.ROOT));
+        }
+
+        return CodeBlock.builder()
+                .add("new $T($L)", StringBuilder.class, lengthHint)
+                .add(appends.build()).add(".toString()").build();
+    }
+
+    /**
+     * Generates an expression formatting a template reloaded at run time,
+     * which is parsed when loaded and formatted by {@link MessageTemplate}.
+     */
+    private static CodeBlock generateReloadedExpression(String pTemplate,
+            List<ParameterSpec> pParameters) {
+        return CodeBlock.of("$N.format(getLocale(), new $T[] { $L })",
+                pTemplate, Object.class,
+                pParameters.stream().map(p -> CodeBlock.of("$N", p))
+                        .collect(CodeBlock.joining(", ")));
+    }
+
+    /**
+     * Wraps the body of a method formatting a message, so the metrics of the
+     * bundle record how long it takes.
+     */
+    private static CodeBlock generateTimedBody(
+            MessageBundleMethodDescriptor pMethodDescriptor, CodeBlock pBody) {
+        String started = generateUniqueName(pMethodDescriptor, "started");
+        return CodeBlock.builder()
+                .addStatement("long $N = startFormatting()", started)
+                .beginControlFlow("try").add(pBody)
+                .nextControlFlow("finally")
+                .addStatement("endFormatting($N)", started).endControlFlow()
+                .build();
+    }
+
+    /**
+     * Returns a name for a local variable that does not shadow a parameter of
+     * the method.
+     */
+    private static String generateUniqueName(
+            MessageBundleMethodDescriptor pMethodDescriptor, String pName) {
+        String name = pName;
+        while (true) {
+            String candidate = name;
+            if (pMethodDescriptor.parameters().stream()
+                    .noneMatch(p -> p.name.equals(candidate))) {
+                return name;
+            }
+            name += "_";
+        }
+    }
+
+    /**
+     * Generates the value of an argument token rendered on its own. A number
+     * format element of a primitive argument is formatted through the
+     * primitive overloads of a pooled number format, and other typed elements
+     * by a pooled {@link MessageFormat} of the element alone.
+     */
+    private static CodeBlock generateTokenValue(MessageTemplate.Token pToken,
+            List<ParameterSpec> pParameters) {
+        ParameterSpec parameter = pParameters.get(pToken.getArgumentIndex());
+        if (!pToken.isTyped()) {
+            return CodeBlock.of("$N", parameter);
+        }
+        if ("number".equals(pToken.getFormatType())
+                && NUMERIC_TYPES.contains(parameter.type)) {
+            return CodeBlock.of("$T.getNumberFormat(getLocale(), $S).format($N)",
+                    FormatterPool.class, pToken.getFormatStyle(), parameter);
+        }
+        return CodeBlock.of(
+                "$T.getMessageFormat(getLocale(), $S).format(new $T[] { $L })",
+                FormatterPool.class, pToken.getText(), Object.class,
+                pParameters.stream().map(p -> CodeBlock.of("$N", p))
+                        .collect(CodeBlock.joining(", ")));
+    }
+
+    /**
+     * Generates the statements choosing the case of a plural or select
+     * element. Exact plural values are compared first, then the category is
+     * taken from the method compiled from the plural rules of the language of
+     * the template. Categories the language lacks are never selected, so
+     * their cases are left out.
+     */
+    private static CodeBlock generateBranchWrites(MessageTemplate.Token pToken,
+            List<ParameterSpec> pArguments, MessageSink pSink,
+            ParameterSpec pTarget, PluralRules pRules) {
+
+        ParameterSpec argument = pArguments.get(pToken.getArgumentIndex());
+        Map<String, MessageTemplate> cases = pToken.getCases();
+        CodeBlock other = generateTokenWrites(
+                cases.get(PluralCategory.OTHER.getKeyword()), pArguments,
+                pSink, pTarget, pRules);
+        CodeBlock.Builder writes = CodeBlock.builder();
+        if ("select".equals(pToken.getFormatType())) {
+            writes.beginControlFlow("switch ($T.valueOf($N))", String.class,
+                    argument);
+            cases.forEach((keyword, template) -> {
+                if (!keyword.equals(PluralCategory.OTHER.getKeyword())) {
+                    writes.add("case $S:\n", keyword).indent()
+                            .add(generateTokenWrites(template, pArguments,
+                                    pSink, pTarget, pRules))
+                            .addStatement("break").unindent();
+                }
+            });
+            return writes.add("default:\n").indent().add(other).unindent()
+                    .endControlFlow().build();
+        }
+
+        boolean compared = false;
+        Map<PluralCategory, MessageTemplate> categories = new EnumMap<>(
+                PluralCategory.class);
+        for (Map.Entry<String, MessageTemplate> entry : cases.entrySet()) {
+            String keyword = entry.getKey();
+            PluralCategory category = PluralCategory.of(keyword);
+            if (category != null) {
+                if (category != PluralCategory.OTHER
+                        && pRules.hasCategory(category)) {
+                    categories.put(category, entry.getValue());
+                }
+                continue;
+            }
+            // exact values too long for a long never match
+            if (keyword.length() > 19) {
+                continue;
+            }
+            long value = Long.parseLong(keyword.substring(1));
+            String condition = value > Integer.MAX_VALUE ? "$N == $LL"
+                    : "$N == $L";
+            if (compared) {
+                writes.nextControlFlow("else if (" + condition + ")", argument,
+                        value);
+            } else {
+                writes.beginControlFlow("if (" + condition + ")", argument,
+                        value);
+                compared = true;
+            }
+            writes.add(generateTokenWrites(entry.getValue(), pArguments, pSink,
+                    pTarget, pRules));
+        }
+        if (compared) {
+            writes.nextControlFlow("else");
+        }
+        if (categories.isEmpty()) {
+            writes.add(other);
+        } else {
+            writes.beginControlFlow("switch ($N($N))",
+                    generatePluralMethodName(pRules), argument);
+            categories.forEach((category, template) -> writes
+                    .add("case $L:\n", category.name()).indent()
+                    .add(generateTokenWrites(template, pArguments, pSink,
+                            pTarget, pRules))
+                    .addStatement("break").unindent());
+            writes.add("default:\n").indent().add(other).unindent()
+                    .endControlFlow();
+        }
+        if (compared) {
+            writes.endControlFlow();
+        }
+        return writes.build();
+    }
+
+    /**
+     * Generates the statements returning the formatted message. Templates
+     * with plural or select elements are written into a builder, since their
+     * cases are chosen by statements.
+     */
+    private static CodeBlock generateFormattingReturn(
+            MessageBundleMethodDescriptor pMessage,
+            List<ParameterSpec> pParameters, String pBuilderName) {
+
+        MessageTemplate template = pMessage.template();
+        if (!template.isBranched()) {
+            return CodeBlock.builder().addStatement("return $L",
+                    generateFormattingExpression(template, pParameters))
+                    .build();
+        }
+        ParameterSpec builder = ParameterSpec
+                .builder(StringBuilder.class, pBuilderName).build();
+        return CodeBlock.builder().addStatement("$T $N = new $T($L)",
+                StringBuilder.class,
+                builder, StringBuilder.class,
+                template.getLiteralLength()
+                        + pParameters.size() * ARGUMENT_LENGTH_HINT)
+                .add(generateSinkWrites(template, pParameters,
+                        MessageSink.STRING_BUILDER, builder,
+                        PluralRules.forLanguageTag(pMessage.locale())))
+                .addStatement("return $N.toString()", builder).build();
+    }
+
+    /**
+     * Generates a case of the switch on the locale index. Cases returning a
+     * template with plural or select elements get a block of their own, so
+     * their builders do not clash.
+     */
+    private static CodeBlock generateLocaleCase(String pLabel,
+            MessageBundleMethodDescriptor pMessage,
+            List<ParameterSpec> pParameters, String pBuilderName) {
+        boolean scoped = pMessage.template().isBranched();
+        return CodeBlock.builder().add(scoped ? "$L: {\n" : "$L:\n", pLabel)
+                .indent()
+                .add(generateFormattingReturn(pMessage, pParameters,
+                        pBuilderName))
+                .unindent().add(scoped ? "}\n" : "").build();
+    }
+
+    /**
+     * Generates the method returning the plural category of a number, with
+     * the rules of a language compiled into comparisons.
+     */
+    private static MethodSpec generatePluralMethod(PluralRules pRules) {
+        MethodSpec.Builder method = MethodSpec
+                .methodBuilder(generatePluralMethodName(pRules))
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(PluralCategory.class)
+                .addParameter(long.class, "pNumber")
+                .addStatement("long n = $T.magnitude(pNumber)",
+                        PluralRules.class);
+        for (PluralRules.Rule rule : pRules.getRules()) {
+            method.addComment("$L", rule)
+                    .beginControlFlow("if ($L)", rule.toJavaExpression("n"))
+                    .addStatement("return $T.$L", PluralCategory.class,
+                            rule.getCategory().name())
+                    .endControlFlow();
+        }
+        return method.addStatement("return $T.$L", PluralCategory.class,
+                PluralCategory.OTHER.name()).build();
+    }
+
+    private static String generatePluralMethodName(PluralRules pRules) {
+        return "plural_" + pRules.getLanguageTag().replace('-', '_');
+    }
+
+    /**
+     * Generates the static methods loading the tables of some locales ahead
+     * of their first message, on an executor or on the common pool.
+     */
+    private static void generatePreloadMethods(Builder pClassBuilder,
+            ClassName pImplName) {
+        ParameterizedTypeName futureType = ParameterizedTypeName
+                .get(CompletableFuture.class, Void.class);
+        pClassBuilder.addMethod(MethodSpec.methodBuilder("preload")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(futureType)
+                .addParameter(Executor.class, "pExecutor")
+                .addParameter(Locale[].class, "pLocales").varargs()
+                .addStatement(
+                        "return preload($T::getTable, pExecutor, pLocales)",
+                        pImplName)
+                .build());
+        pClassBuilder.addMethod(MethodSpec.methodBuilder("preload")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(futureType)
+                .addParameter(Locale[].class, "pLocales").varargs()
+                .addStatement("return preload($T.commonPool(), pLocales)",
+                        ForkJoinPool.class)
+                .build());
+    }
+
+    private static boolean generatesPreload(
+            List<Map<String, MessageBundleMethodDescriptor>> pMethods) {
+        return pMethods.stream().noneMatch(
+                m -> "preload".equals(m.values().iterator().next().name()));
+    }
+
+    private static CodeBlock generateMethodBody(List<String> pLanguageTags,
+            Map<String, MessageBundleMethodDescriptor> pMessagesByLocale,
+            int pIndex, MessageBundleMethodDescriptor pMethodDescriptor) {
+
+        if (pMethodDescriptor.sink().isPresent()) {
+            return generateSinkMethodBody(pLanguageTags, pMessagesByLocale,
+                    pIndex, pMethodDescriptor);
+        }
+
+        // the processor only lets methods returning a string reach here.
+        return generateStringMethodBody(pLanguageTags, pMessagesByLocale,
+                pIndex, pMethodDescriptor);
+    }
+
+    private static CodeBlock generateStringMethodBody(
+            List<String> pLanguageTags,
+            Map<String, MessageBundleMethodDescriptor> pMessagesByLocale,
+            int pIndex, MessageBundleMethodDescriptor pMethodDescriptor) {
+
+        // messages without arguments are served straight from the table of
+        // the selected locale.
+        List<ParameterSpec> parameters = pMethodDescriptor.arguments();
+        if (parameters.isEmpty()) {
+            return CodeBlock.builder()
+                    .addStatement("return getMessage($L)", pIndex).build();
+        }
+
+        MessageBundleMethodDescriptor fallback = selectFallback(pLanguageTags,
+                pMessagesByLocale);
+
+        CodeBlock.Builder body = CodeBlock.builder();
+        String reloaded = generateUniqueName(pMethodDescriptor, "reloaded");
+        body.addStatement("$T $N = getReloadedTemplate($L)",
+                MessageTemplate.class, reloaded, pIndex)
+                .beginControlFlow("if ($N != null)", reloaded)
+                .addStatement("return $L",
+                        generateReloadedExpression(reloaded, parameters))
+                .endControlFlow();
+        String builder = generateUniqueName(pMethodDescriptor, "builder");
+        if (pMessagesByLocale.size() == 1) {
+            return generateTimedBody(pMethodDescriptor,
+                    body.add(generateFormattingReturn(fallback, parameters,
+                            builder)).build());
+        }
+
+        body.beginControlFlow("switch (localeIndex)");
+        for (int i = 1; i < pLanguageTags.size(); i++) {
+            MessageBundleMethodDescriptor descriptor = pMessagesByLocale
+                    .get(pLanguageTags.get(i));
+            if (descriptor != null) {
+                body.add(generateLocaleCase("case " + i, descriptor,
+                        parameters, builder));
+            }
+        }
+        body.add(generateLocaleCase("default", fallback, parameters, builder));
+        return generateTimedBody(pMethodDescriptor,
+                body.endControlFlow().build());
+    }
+
+    /**
+     * Generates the batch companions of a message: a static method taking a
+     * {@link MessageBatch} and a column of arguments per parameter, and the
+     * instance method rendering a chunk of one locale group of the batch. The
+     * chunk reads the reloaded template once and writes every message into
+     * the same builder.
+     */
+    private static void generateBatchMethods(Builder pClassBuilder,
+            ClassName pImplName, String pName, List<String> pLanguageTags,
+            Map<String, MessageBundleMethodDescriptor> pMessagesByLocale,
+            int pIndex, MessageBundleMethodDescriptor pMethodDescriptor) {
+
+        List<ParameterSpec> arguments = pMethodDescriptor.arguments();
+        Set<String> names = arguments.stream().map(p -> p.name)
+                .collect(Collectors.toCollection(HashSet::new));
+        List<ParameterSpec> columns = new ArrayList<>(arguments.size());
+        for (ParameterSpec argument : arguments) {
+            columns.add(ParameterSpec.builder(ArrayTypeName.of(argument.type),
+                    generateBatchName(names, argument.name + "s")).build());
+        }
+        ParameterSpec indexes = ParameterSpec
+                .builder(int[].class, generateBatchName(names, "indexes"))
+                .build();
+        ParameterSpec from = ParameterSpec
+                .builder(int.class, generateBatchName(names, "from")).build();
+        ParameterSpec to = ParameterSpec
+                .builder(int.class, generateBatchName(names, "to")).build();
+        ParameterSpec messages = ParameterSpec
+                .builder(String[].class, generateBatchName(names, "messages"))
+                .build();
+        ParameterSpec builder = ParameterSpec.builder(StringBuilder.class,
+                generateBatchName(names, "builder")).build();
+        String reloaded = generateBatchName(names, "reloaded");
+        String position = generateBatchName(names, "position");
+        String index = generateBatchName(names, "index");
+        String batch = generateBatchName(names, "batch");
+        String locale = generateBatchName(names, "locale");
+        CodeBlock columnArguments = columns.stream()
+                .map(c -> CodeBlock.of("$N", c))
+                .collect(CodeBlock.joining(", "));
+
+        MessageBundleMethodDescriptor fallback = selectFallback(pLanguageTags,
+                pMessagesByLocale);
+        CodeBlock.Builder loop = CodeBlock.builder()
+                .addStatement("$T $N = getReloadedTemplate($L)",
+                        MessageTemplate.class, reloaded, pIndex)
+                .addStatement("$T $N = new $T($L)", StringBuilder.class,
+                        builder, StringBuilder.class,
+                        fallback.template().getLiteralLength()
+                                + arguments.size() * ARGUMENT_LENGTH_HINT)
+                .beginControlFlow("for (int $N = $N; $N < $N; $N++)", position,
+                        from, position, to, position)
+                .addStatement("int $N = $N[$N]", index, indexes, position);
+        for (int i = 0; i < arguments.size(); i++) {
+            loop.addStatement("$T $N = $N[$N]", arguments.get(i).type,
+                    arguments.get(i), columns.get(i), index);
+        }
+        loop.beginControlFlow("if ($N != null)", reloaded)
+                .addStatement("$N[$N] = $L", messages, index,
+                        generateReloadedExpression(reloaded, arguments))
+                .addStatement("continue").endControlFlow()
+                .addStatement("$N.setLength(0)", builder);
+        if (pMessagesByLocale.size() == 1) {
+            loop.add(generateSinkWrites(fallback, arguments,
+                    MessageSink.STRING_BUILDER, builder));
+        } else {
+            loop.beginControlFlow("switch (localeIndex)");
+            for (int i = 1; i < pLanguageTags.size(); i++) {
+                MessageBundleMethodDescriptor descriptor = pMessagesByLocale
+                        .get(pLanguageTags.get(i));
+                if (descriptor != null) {
+                    loop.add("case $L:\n", i).indent()
+                            .add(generateSinkWrites(descriptor, arguments,
+                                    MessageSink.STRING_BUILDER, builder))
+                            .addStatement("break").unindent();
+                }
+            }
+            loop.add("default:\n").indent()
+                    .add(generateSinkWrites(fallback, arguments,
+                            MessageSink.STRING_BUILDER, builder))
+                    .unindent().endControlFlow();
+        }
+        loop.addStatement("$N[$N] = $N.toString()", messages, index, builder)
+                .endControlFlow();
+
+        pClassBuilder.addMethod(MethodSpec.methodBuilder(pName)
+                .addModifiers(Modifier.PRIVATE).addParameter(indexes)
+                .addParameter(from).addParameter(to).addParameter(messages)
+                .addParameters(columns).addCode(loop.build()).build());
+
+        CodeBlock.Builder body = CodeBlock.builder();
+        for (ParameterSpec column : columns) {
+            body.addStatement("$N.checkColumn($N.length)", batch, column);
+        }
+        pClassBuilder.addMethod(MethodSpec.methodBuilder(pName)
+                .addJavadoc("Formats the message of {@link #$N} for each entry "
+                        + "of the batch, taking the arguments of the entry "
+                        + "from the columns.\n\n"
+                        + "@return the messages, in the order of the entries.\n",
+                        pMethodDescriptor.name())
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(String[].class)
+                .addParameter(MessageBatch.class, batch).addParameters(columns)
+                .addCode(body.build())
+                .addStatement("$T[] $N = new $T[$N.size()]", String.class,
+                        messages, String.class, batch)
+                .addStatement(
+                        "$N.run(($N, $N, $N, $N) -> new $T($N).$N($N, $N, $N, $N, $L))",
+                        batch, locale, indexes, from, to, pImplName, locale,
+                        pName, indexes, from, to, messages, columnArguments)
+                .addStatement("return $N", messages).build());
+    }
+
+    /**
+     * Returns a name not taken by the parameters of the message nor by the
+     * names generated before for its batch methods.
+     */
+    private static String generateBatchName(Set<String> pNames,
+            String pName) {
+        String name = pName;
+        while (!pNames.add(name)) {
+            name += "_";
+        }
+        return name;
+    }
+
+    /**
+     * Generates a companion returning a {@link LazyMessage} that captures the
+     * arguments and only calls the message method when its text is needed.
+     */
+    private static MethodSpec generateSupplierMethod(String pName,
+            MethodSpec pMessageMethod) {
+
+        TypeSpec lazyMessage = TypeSpec.anonymousClassBuilder("")
+                .superclass(LazyMessage.class)
+                .addMethod(MethodSpec.methodBuilder("format")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PROTECTED)
+                        .returns(String.class)
+                        .addStatement("return $N($L)", pMessageMethod,
+                                pMessageMethod.parameters.stream()
+                                        .map(p -> CodeBlock.of("$N", p))
+                                        .collect(CodeBlock.joining(", ")))
+                        .build())
+                .build();
+
+        return MethodSpec.methodBuilder(pName)
+                .addJavadoc(
+                        "@return the message of {@link #$N}, formatted only when its text is first needed.\n",
+                        pMessageMethod)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .returns(LazyMessage.class)
+                .addParameters(pMessageMethod.parameters)
+                .addStatement("return $L", lazyMessage).build();
+    }
+
+    /**
+     * Generates the body of a method building an exception. Lightweight
+     * exceptions are anonymous subclasses that skip the stack trace and
+     * format their message on the first call to {@code getMessage()}.
+     */
+    private static CodeBlock generateThrowableMethodBody(
+            MessageBundleMethodDescriptor pMethodDescriptor,
+            MethodSpec pMessageMethod, boolean pLightweight) {
+
+        CodeBlock arguments = pMethodDescriptor.parameters().stream()
+                .map(p -> CodeBlock.of("$N", p))
+                .collect(CodeBlock.joining(", "));
+        if (!pLightweight) {
+            return CodeBlock.builder()
+                    .addStatement("return new $T($N($L))",
+                            pMethodDescriptor.returnTypeName(), pMessageMethod,
+                            arguments)
+                    .build();
+        }
+
+        TypeSpec exception = TypeSpec
+                .anonymousClassBuilder("($T) null", String.class)
+                .superclass(pMethodDescriptor.returnTypeName())
+                .addField(String.class, "message", Modifier.PRIVATE)
+                .addMethod(MethodSpec.methodBuilder("getMessage")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC).returns(String.class)
+                        .beginControlFlow("if (message == null)")
+                        .addStatement("message = $N($L)", pMessageMethod,
+                                arguments)
+                        .endControlFlow().addStatement("return message")
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("fillInStackTrace")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(Throwable.class).addStatement("return this")
+                        .build())
+                .build();
+        return CodeBlock.builder().addStatement("return $L", exception)
+                .build();
+    }
+
+    /**
+     * Generates the body of a method writing its message into a sink. The
+     * tokens of the template are written one by one, so no string holding the
+     * whole message is built. When a buffer has not enough space left, its
+     * position is reset to where the message started before the
+     * {@link BufferOverflowException} is rethrown, so it never holds a part
+     * of the message.
+     */
+    private static CodeBlock generateSinkMethodBody(List<String> pLanguageTags,
+            Map<String, MessageBundleMethodDescriptor> pMessagesByLocale,
+            int pIndex, MessageBundleMethodDescriptor pMethodDescriptor) {
+
+        MessageSink sink = pMethodDescriptor.sink().get();
+        ParameterSpec target = pMethodDescriptor.parameters()
+                .get(pMethodDescriptor.sinkIndex());
+        List<ParameterSpec> arguments = pMethodDescriptor.arguments();
+
+        CodeBlock.Builder body = CodeBlock.builder();
+        String reloaded = generateUniqueName(pMethodDescriptor, "reloaded");
+        if (!arguments.isEmpty()) {
+            body.addStatement("$T $N = getReloadedTemplate($L)",
+                    MessageTemplate.class, reloaded, pIndex);
+        }
+        String start = generateUniqueName(pMethodDescriptor, "start");
+        boolean restored = sink == MessageSink.BYTE_BUFFER
+                && !arguments.isEmpty();
+        if (restored) {
+            body.addStatement("int $N = $N.position()", start, target);
+        }
+        if (sink == MessageSink.APPENDABLE || restored) {
+            body.beginControlFlow("try");
+        }
+        if (arguments.isEmpty() && sink == MessageSink.BYTE_BUFFER) {
+            // static messages are encoded only once per locale
+            body.addStatement("$N.put(getMessageUtf8($L))", target, pIndex);
+        } else if (arguments.isEmpty()) {
+            body.addStatement("$L", generateSinkWrite(sink, target,
+                    CodeBlock.of("getMessage($L)", pIndex), STRING));
+        } else {
+            MessageBundleMethodDescriptor fallback = selectFallback(
+                    pLanguageTags, pMessagesByLocale);
+            body.beginControlFlow("if ($N != null)", reloaded)
+                    .addStatement("$L", generateSinkWrite(sink, target,
+                            generateReloadedExpression(reloaded, arguments),
+                            STRING))
+                    .nextControlFlow("else");
+            if (pMessagesByLocale.size() == 1) {
+                body.add(generateSinkWrites(fallback, arguments, sink,
+                        target));
+            } else {
+                body.beginControlFlow("switch (localeIndex)");
+                for (int i = 1; i < pLanguageTags.size(); i++) {
+                    MessageBundleMethodDescriptor descriptor = pMessagesByLocale
+                            .get(pLanguageTags.get(i));
+                    if (descriptor != null) {
+                        body.add("case $L:\n", i).indent()
+                                .add(generateSinkWrites(descriptor, arguments,
+                                        sink, target))
+                                .addStatement("break").unindent();
+                    }
+                }
+                body.add("default:\n").indent()
+                        .add(generateSinkWrites(fallback, arguments, sink,
+                                target))
+                        .unindent().endControlFlow();
+            }
+            body.endControlFlow();
+        }
+        if (sink == MessageSink.APPENDABLE) {
+            String exception = generateUniqueName(pMethodDescriptor, "e");
+            body.nextControlFlow("catch ($T $N)", IOException.class, exception)
+                    .addStatement("throw new $T($N)",
+                            UncheckedIOException.class, exception)
+                    .endControlFlow();
+        } else if (restored) {
+            String exception = generateUniqueName(pMethodDescriptor, "e");
+            body.nextControlFlow("catch ($T $N)", BufferOverflowException.class,
+                    exception).addStatement("$N.position($N)", target, start)
+                    .addStatement("throw $N", exception).endControlFlow();
+        }
+        if (!pMethodDescriptor.returnTypeName().equals(TypeName.VOID)) {
+            body.addStatement("return $N", target);
+        }
+        return arguments.isEmpty() ? body.build()
+                : generateTimedBody(pMethodDescriptor, body.build());
+    }
+
+    /**
+     * Generates a statement writing a value into the sink. Characters and the
+     * digits of integral primitives are written as they are, other values are
+     * converted to a string first.
+     */
+    private static CodeBlock generateSinkWrite(MessageSink pSink,
+            ParameterSpec pTarget, CodeBlock pValue, TypeName pValueType) {
+
+        boolean characters = CHARACTER_TYPES.contains(pValueType)
+                || pValueType.equals(TypeName.CHAR);
+        CodeBlock text = pValueType.equals(TypeName.BOOLEAN)
+                ? CodeBlock.of("$L ? $S : $S", pValue, "true", "false")
+                : CodeBlock.of("$T.valueOf($L)", String.class, pValue);
+        switch (pSink) {
+        case STRING_BUILDER:
+            return CodeBlock.of("$N.append($L)", pTarget, pValue);
+        case APPENDABLE:
+            if (INTEGRAL_TYPES.contains(pValueType)) {
+                return CodeBlock.of("$T.append($L, $N)", Digits.class, pValue,
+                        pTarget);
+            }
+            return CodeBlock.of("$N.append($L)", pTarget,
+                    characters ? pValue : text);
+        default:
+            if (INTEGRAL_TYPES.contains(pValueType)) {
+                return CodeBlock.of("$T.encode($L, $N)", Digits.class, pValue,
+                        pTarget);
+            }
+            return CodeBlock.of("$T.encode($L, $N)", Utf8.class,
+                    characters ? pValue : text, pTarget);
+        }
+    }
+
+    private static CodeBlock generateSinkWrites(
+            MessageBundleMethodDescriptor pMessage,
+            List<ParameterSpec> pArguments, MessageSink pSink,
+            ParameterSpec pTarget) {
+        return generateSinkWrites(pMessage.template(), pArguments, pSink,
+                pTarget, PluralRules.forLanguageTag(pMessage.locale()));
+    }
+
+    /**
+     * Generates the statements writing the template into the sink token by
+     * token.
+     */
+    private static CodeBlock generateSinkWrites(MessageTemplate pTemplate,
+            List<ParameterSpec> pArguments, MessageSink pSink,
+            ParameterSpec pTarget, PluralRules pRules) {
+        return generateTokenWrites(pTemplate, pArguments, pSink, pTarget,
+                pRules);
+    }
+
+    /**
+     * Generates the statements writing the tokens of the template into the
+     * sink one by one, choosing the cases of plural elements with the rules
+     * given. The cases are always written this way, since their {@code #}
+     * is unknown to {@link MessageFormat}.
+     */
+    private static CodeBlock generateTokenWrites(MessageTemplate pTemplate,
+            List<ParameterSpec> pArguments, MessageSink pSink,
+            ParameterSpec pTarget, PluralRules pRules) {
+
+        CodeBlock.Builder writes = CodeBlock.builder();
+        for (MessageTemplate.Token token : pTemplate.getTokens()) {
+            if (token.isBranched()) {
+                writes.add(generateBranchWrites(token, pArguments, pSink,
+                        pTarget, pRules));
+            } else if (token.isArgument()) {
+                ParameterSpec argument = pArguments
+                        .get(token.getArgumentIndex());
+                writes.addStatement("$L", generateSinkWrite(pSink, pTarget,
+                        generateTokenValue(token, pArguments),
+                        token.isTyped() ? STRING : argument.type));
+            } else {
+                writes.addStatement("$L", generateSinkWrite(pSink, pTarget,
+                        CodeBlock.of("$S", token.getText()), STRING));
+            }
+        }
+        return writes.build();
+    }
+
+    /**
+     * Generates one holder class per locale. Since the JVM initializes a class
+     * only when it is first used, the templates of a locale are only loaded
+     * when a table is requested for it. The tables of large bundles are
+     * filled by chunks, so no holder exceeds the limits of the JVM on the
+     * code of a method.
+     */
+    private static CodeBlock generateMessageTableHolders(Builder pClassBuilder,
+            List<String> pLanguageTags, List<List<String>> pTables) {
+
+        List<String> holderNames = new ArrayList<>(pLanguageTags.size());
+        for (int i = 0; i < pLanguageTags.size(); i++) {
+            String holderName = computeHolderName(pLanguageTags.get(i));
+            Builder holder = TypeSpec.classBuilder(holderName).addModifiers(
+                    Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+            pClassBuilder.addType(holder.addField(FieldSpec
+                    .builder(String[].class, "MESSAGES", Modifier.STATIC,
+                            Modifier.FINAL)
+                    .initializer(generateStringArrayInitializer(holder,
+                            "MESSAGES", pTables.get(i)))
+                    .build()).build());
+            holderNames.add(holderName);
+        }
+
+        CodeBlock.Builder selection = CodeBlock.builder()
+                .addStatement("$T[] messages", String.class)
+                .beginControlFlow("switch (localeIndex)");
+        for (int i = 1; i < holderNames.size(); i++) {
+            selection.add("case $L:\n", i).indent()
+                    .addStatement("messages = $N.MESSAGES", holderNames.get(i))
+                    .addStatement("break").unindent();
+        }
+        return selection.add("default:\n").indent()
+                .addStatement("messages = $N.MESSAGES", holderNames.get(0))
+                .unindent().endControlFlow().build();
+    }
+
+    /**
+     * Generates the initializer of a static array whose elements are set by
+     * the given assignments, one method per chunk of them, since a class
+     * initializer setting them all would exceed the 64KB limit of the JVM on
+     * the code of a method.
+     */
+    private static CodeBlock generateChunkedInitializer(Builder pClassBuilder,
+            String pName, TypeName pType, CodeBlock pCreation,
+            List<CodeBlock> pAssignments) {
+
+        String initName = "init_" + pName;
+        MethodSpec.Builder init = MethodSpec.methodBuilder(initName)
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(pType).addStatement("$T values = $L", pType,
+                        pCreation);
+        for (int start = 0; start < pAssignments.size(); start += ARRAY_CHUNK_SIZE) {
+            String chunkName = initName + "_" + start / ARRAY_CHUNK_SIZE;
+            MethodSpec.Builder chunk = MethodSpec.methodBuilder(chunkName)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addParameter(pType, "pValues");
+            for (CodeBlock assignment : pAssignments.subList(start,
+                    Math.min(start + ARRAY_CHUNK_SIZE, pAssignments.size()))) {
+                chunk.addStatement("pValues$L", assignment);
+            }
+            pClassBuilder.addMethod(chunk.build());
+            init.addStatement("$N(values)", chunkName);
+        }
+        pClassBuilder.addMethod(init.addStatement("return values").build());
+        return CodeBlock.of("$N()", initName);
+    }
+
+    private static CodeBlock generateStringArrayInitializer(
+            Builder pClassBuilder, String pName, List<String> pValues) {
+        if (pValues.size() <= ARRAY_CHUNK_SIZE) {
+            return generateStringArray(pValues);
+        }
+        List<CodeBlock> assignments = new ArrayList<>(pValues.size());
+        for (int i = 0; i < pValues.size(); i++) {
+            assignments.add(CodeBlock.of("[$L] = $S", i, pValues.get(i)));
+        }
+        return generateChunkedInitializer(pClassBuilder, pName,
+                TypeName.get(String[].class),
+                CodeBlock.of("new $T[$L]", String.class, pValues.size()),
+                assignments);
+    }
+
+    private static CodeBlock generateStringArray(List<String> pValues) {
+        return CodeBlock.of("{ $L }",
+                pValues.stream().map(v -> CodeBlock.of("$S", v))
+                        .collect(CodeBlock.joining(", ")));
+    }
+
+    private static FieldSpec generateIntArraysField(Builder pClassBuilder,
+            String pName, List<List<Integer>> pValues) {
+        FieldSpec.Builder field = FieldSpec.builder(int[][].class, pName,
+                Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+        if (pValues.stream().mapToInt(List::size).sum() <= ARRAY_CHUNK_SIZE) {
+            return field.initializer("{ $L }", pValues.stream()
+                    .map(v -> CodeBlock.of(v.isEmpty() ? "{}" : "{ $L }",
+                            v.stream().map(String::valueOf)
+                                    .collect(Collectors.joining(", "))))
+                    .collect(CodeBlock.joining(", "))).build();
+        }
+        // the new rows are already filled with zeros
+        List<CodeBlock> assignments = new ArrayList<>();
+        for (int i = 0; i < pValues.size(); i++) {
+            List<Integer> row = pValues.get(i);
+            assignments.add(CodeBlock.of("[$L] = new int[$L]", i, row.size()));
+            for (int j = 0; j < row.size(); j++) {
+                if (row.get(j) != 0) {
+                    assignments.add(
+                            CodeBlock.of("[$L][$L] = $L", i, j, row.get(j)));
+                }
+            }
+        }
+        return field.initializer(generateChunkedInitializer(pClassBuilder,
+                pName, TypeName.get(int[][].class),
+                CodeBlock.of("new int[$L][]", pValues.size()), assignments))
+                .build();
+    }
+
+    private static FieldSpec generateStringArrayField(String pName,
+            CodeBlock pInitializer) {
+        return FieldSpec
+                .builder(String[].class, pName, Modifier.PRIVATE,
+                        Modifier.STATIC, Modifier.FINAL)
+                .initializer(pInitializer).build();
+    }
+
+    private static int indexOfLanguageTag(List<String> pLanguageTags,
+            String pLanguageTag) {
+        for (int i = 0; i < pLanguageTags.size(); i++) {
+            if (pLanguageTags.get(i).equalsIgnoreCase(pLanguageTag)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Makes the locales lacking the message of a method inherit the one of
+     * their nearest parent locale, so neither the tables nor the generated
+     * methods walk parents at run time.
+     */
+    private static void inheritParentMessages(List<String> pLanguageTags,
+            List<Map<String, MessageBundleMethodDescriptor>> pMethods) {
+
+        List<List<Integer>> chains = computeFallbackChains(pLanguageTags);
+        for (Map<String, MessageBundleMethodDescriptor> method : pMethods) {
+            for (int i = 1; i < pLanguageTags.size(); i++) {
+                if (method.containsKey(pLanguageTags.get(i))) {
+                    continue;
+                }
+                for (int parent : chains.get(i)) {
+                    MessageBundleMethodDescriptor inherited = method
+                            .get(pLanguageTags.get(parent));
+                    if (inherited != null) {
+                        method.put(pLanguageTags.get(i), inherited);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<String, List<MessageBundleMethodDescriptor>> groupByLocale(
+            MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor) {
+        return pMessageBundleDescriptor.methodDescriptors().stream().collect(
+                Collectors.groupingBy(MessageBundleMethodDescriptor::locale));
+    }
+
+    /**
+     * Methods without a message for the default locale fall back to the first
+     * locale found.
+     */
+    private static MessageBundleMethodDescriptor selectFallback(
+            List<String> pLanguageTags,
+            Map<String, MessageBundleMethodDescriptor> pMessagesByLocale) {
+        return pMessagesByLocale.getOrDefault(pLanguageTags.get(0),
+                pMessagesByLocale.values().iterator().next());
+    }
+
+    /**
+     * Generates the implementation class and the resources selected by the
+     * bundle format of the given descriptor.
+     *
+     * @param pMessageBundleDescriptor
+     *                                     the message bundle.
+     * @return the generated output, holding the errors found if any.
+     */
+    GeneratedBundle generate(
+            MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor) {
+
+        GeneratedBundle bundle = new GeneratedBundle(pMessageBundleDescriptor);
+        List<String> languageTags = computeLanguageTags(
+                pMessageBundleDescriptor);
+        List<Map<String, MessageBundleMethodDescriptor>> methods = groupByMethod(
+                bundle, languageTags);
+        if (methods == null) {
+            return bundle;
+        }
+        inheritParentMessages(languageTags, methods);
+
+        BundleFormat format = pMessageBundleDescriptor.getBundleFormat();
+
+        // generate the properties file, one for each locale extracted from the
+        // message tagged methods.
+        if (format.emitsProperties()) {
+            generateMessageBundleProperties(bundle);
+        }
+
+        if (format.emitsBinary()) {
+            generateMessageBundleBinary(bundle, languageTags, methods);
+        }
+
+        bundle.setSource(generateMessageBundleImplementationClass(
+                pMessageBundleDescriptor, languageTags, methods));
+        bundle.setLanguageTags(languageTags);
+        bundle.setPreloadable(generatesPreload(methods));
+        generateNativeImageMetadata(bundle, languageTags);
+        return bundle;
+    }
+
+    /**
+     * Generates the native-image configuration of the bundle: the holders of
+     * its embedded tables are initialized at build time, while its compact
+     * bundle is included as a resource.
+     */
+    private void generateNativeImageMetadata(GeneratedBundle pBundle,
+            List<String> pLanguageTags) {
+
+        MessageBundleDescriptor<MessageBundleMethodDescriptor> descriptor = pBundle
+                .getDescriptor();
+        String implName = ClassName
+                .get(descriptor.packageName(), descriptor.simpleName() + "Impl")
+                .reflectionName();
+
+        pBundle.addResource(
+                NativeImageMetadata.computeResourceName(implName,
+                        "reflect-config.json"),
+                NativeImageMetadata.generateReflectConfig(implName));
+        if (descriptor.getBundleFormat().emitsBinary()) {
+            pBundle.addResource(
+                    NativeImageMetadata.computeResourceName(implName,
+                            "resource-config.json"),
+                    NativeImageMetadata.generateResourceConfig(List.of(
+                            computeBinaryFileName(
+                                    descriptor.getPropertiesBasePath(),
+                                    descriptor.getPropertiesBaseName()))));
+        } else {
+            pBundle.addResource(
+                    NativeImageMetadata.computeResourceName(implName,
+                            "native-image.properties"),
+                    NativeImageMetadata.generateProperties(pLanguageTags
+                            .stream()
+                            .map(t -> implName + "$" + computeHolderName(t))
+                            .collect(Collectors.toList())));
+        }
+    }
+
+    private void generateMessageBundleBinary(GeneratedBundle pBundle,
+            List<String> pLanguageTags,
+            List<Map<String, MessageBundleMethodDescriptor>> pMethods) {
+
+        MessageBundleDescriptor<MessageBundleMethodDescriptor> descriptor = pBundle
+                .getDescriptor();
+        List<List<String>> tables = computeMessageTables(pLanguageTags,
+                pMethods);
+
+        CompactBundleWriter writer = new CompactBundleWriter(pMethods.stream()
+                .map(m -> selectFallback(pLanguageTags, m).key())
+                .collect(Collectors.toList()));
+        for (int i = 0; i < pLanguageTags.size(); i++) {
+            writer.addLocale(pLanguageTags.get(i), tables.get(i));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            writer.write(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pBundle.addResource(
+                computeBinaryFileName(descriptor.getPropertiesBasePath(),
+                        descriptor.getPropertiesBaseName()),
+                output.toByteArray());
+    }
+
+    private JavaFile generateMessageBundleImplementationClass(
+            MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor,
+            List<String> pLanguageTags,
+            List<Map<String, MessageBundleMethodDescriptor>> pMethods) {
+
+        Builder classBuilder = TypeSpec
+                .classBuilder(pMessageBundleDescriptor.simpleName() + "Impl")
+                .superclass(AbstractMessageBundle.class)
+                .addSuperinterface(
+                        pMessageBundleDescriptor.getTargetTypeName())
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addOriginatingElement(pMessageBundleDescriptor.targetType());
+
+        classBuilder.addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("this($T.getDefault())", Locale.class).build());
+
+        classBuilder.addField(generateStringArrayField("LANGUAGE_TAGS",
+                generateStringArray(pLanguageTags)));
+        classBuilder.addField(generateStringArrayField("KEYS",
+                generateStringArrayInitializer(classBuilder, "KEYS",
+                        pMethods.stream()
+                                .map(m -> selectFallback(pLanguageTags, m)
+                                        .key())
+                                .collect(Collectors.toList()))));
+        ClassName implName = ClassName.get(
+                pMessageBundleDescriptor.packageName(),
+                pMessageBundleDescriptor.simpleName() + "Impl");
+
+        CodeBlock tableStatement;
+        if (pMessageBundleDescriptor.getBundleFormat().emitsBinary()) {
+            // the resource is read when a table is first requested, outside
+            // of any class initializer, so loading never pins a virtual
+            // thread.
+            classBuilder.addField(FieldSpec
+                    .builder(ParameterizedTypeName.get(Supplier.class,
+                            CompactBundle.class), "BUNDLE", Modifier.PRIVATE,
+                            Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.lazy($T.class.getClassLoader(), $S)",
+                            CompactBundle.class, implName,
+                            computeBinaryFileName(
+                                    pMessageBundleDescriptor
+                                            .getPropertiesBasePath(),
+                                    pMessageBundleDescriptor
+                                            .getPropertiesBaseName()))
+                    .build());
+            tableStatement = CodeBlock.builder()
+                    .addStatement(
+                            "return BUNDLE.get().getTable(localeIndex, KEYS)")
+                    .build();
+        } else {
+            tableStatement = CodeBlock.builder()
+                    .add(generateMessageTableHolders(classBuilder,
+                            pLanguageTags,
+                            computeMessageTables(pLanguageTags, pMethods)))
+                    .addStatement(
+                            "return new $T(localeIndex, KEYS, messages)",
+                            MessageTable.class)
+                    .build();
+        }
+        classBuilder.addField(FieldSpec
+                .builder(MessageBundleMetrics.class, "METRICS",
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.create($S, LANGUAGE_TAGS)",
+                        MessageBundleMetrics.class,
+                        pMessageBundleDescriptor.getTargetTypeName()
+                                .toString())
+                .build());
+        // files reloaded for a parent locale override the messages its
+        // children inherited at compile time.
+        classBuilder.addField(generateIntArraysField(classBuilder,
+                "FALLBACKS", computeFallbackChains(pLanguageTags)));
+        classBuilder.addField(generateIntArraysField(classBuilder, "ORIGINS",
+                computeMessageOrigins(pLanguageTags, pMethods)));
+        classBuilder.addField(FieldSpec
+                .builder(MessageBundleReloader.class, "RELOADER",
+                        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer(
+                        "new $T($S, LANGUAGE_TAGS, KEYS, FALLBACKS, ORIGINS)",
+                        MessageBundleReloader.class,
+                        pMessageBundleDescriptor.getPropertiesBaseName())
+                .build());
+        ParameterizedTypeName cacheType = ParameterizedTypeName
+                .get(LocaleCache.class, MessageTable.class);
+        classBuilder.addField(FieldSpec
+                .builder(cacheType, "TABLES", Modifier.PRIVATE,
+                        Modifier.STATIC, Modifier.FINAL)
+                .initializer("$T.create(METRICS)", LocaleCache.class)
+                .build());
+
+        classBuilder.addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(Locale.class, "pLocale")
+                .addStatement(
+                        "super(pLocale, getTable(pLocale), RELOADER, METRICS)")
+                .build());
+
+        // tables are cached per resolved locale, so the locales falling back
+        // to the same one share its table.
+        classBuilder.addMethod(MethodSpec.methodBuilder("getTable")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(MessageTable.class)
+                .addParameter(Locale.class, "pLocale")
+                .addStatement(
+                        "return TABLES.get(pLocale, l -> resolveLocaleIndex(l, METRICS, LANGUAGE_TAGS), $T::loadTable)",
+                        implName)
+                .build());
+        classBuilder.addMethod(MethodSpec.methodBuilder("loadTable")
+                .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                .returns(MessageTable.class)
+                .addParameter(int.class, "localeIndex")
+                .addCode(tableStatement).build());
+
+        if (generatesPreload(pMethods)) {
+            generatePreloadMethods(classBuilder, implName);
+        }
+
+        // the plural rules of the languages of the templates are compiled
+        // once per language.
+        pMethods.stream().flatMap(m -> m.values().stream())
+                .filter(m -> m.template().flattenTokens()
+                        .anyMatch(t -> "plural".equals(t.getFormatType())))
+                .map(m -> PluralRules.forLanguageTag(m.locale()))
+                .filter(r -> !r.getRules().isEmpty())
+                .collect(Collectors.toMap(PluralRules::getLanguageTag, r -> r,
+                        (a, b) -> a, TreeMap::new))
+                .values().forEach(r -> classBuilder
+                        .addMethod(generatePluralMethod(r)));
+
+        Set<String> methodNames = pMethods.stream()
+                .map(m -> m.values().iterator().next())
+                .filter(m -> m.parameters().isEmpty())
+                .map(MessageBundleMethodDescriptor::name)
+                .collect(Collectors.toSet());
+        Set<String> allMethodNames = pMethods.stream()
+                .map(m -> m.values().iterator().next().name())
+                .collect(Collectors.toSet());
+
+        int index = 0;
+        for (Map<String, MessageBundleMethodDescriptor> messagesByLocale : pMethods) {
+
+            MessageBundleMethodDescriptor methodDescriptor = messagesByLocale
+                    .values().iterator().next();
+
+            CodeBlock body;
+            if (methodDescriptor.returnsThrowable()) {
+                // exceptions get their message from a private method, so
+                // lightweight ones can call it later.
+                String messageName = methodDescriptor.name() + "Message";
+                while (allMethodNames.contains(messageName)) {
+                    messageName = messageName + "_";
+                }
+                MethodSpec messageMethod = MethodSpec
+                        .methodBuilder(messageName)
+                        .addModifiers(Modifier.PRIVATE)
+                        .returns(String.class)
+                        .addParameters(methodDescriptor.parameters())
+                        .addCode(generateStringMethodBody(pLanguageTags,
+                                messagesByLocale, index, methodDescriptor))
+                        .build();
+                classBuilder.addMethod(messageMethod);
+                body = generateThrowableMethodBody(methodDescriptor,
+                        messageMethod, pMessageBundleDescriptor
+                                .isLightweightExceptions());
+            } else {
+                body = generateMethodBody(pLanguageTags, messagesByLocale,
+                        index, methodDescriptor);
+            }
+
+            MethodSpec method = MethodSpec
+                    .methodBuilder(methodDescriptor.name())
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                    .returns(methodDescriptor.returnTypeName())
+                    .addParameters(methodDescriptor.parameters())
+                    .addCode(body).build();
+
+            classBuilder.addMethod(method);
+
+            // static messages also get an accessor to their encoded bytes,
+            // unless the interface already declares a message with its name.
+            String utf8Name = methodDescriptor.name() + "Utf8";
+            if (methodDescriptor.returnsString()
+                    && methodDescriptor.arguments().isEmpty()
+                    && methodDescriptor.sink().isEmpty()
+                    && !methodNames.contains(utf8Name)) {
+                classBuilder.addMethod(MethodSpec.methodBuilder(utf8Name)
+                        .addJavadoc(
+                                "@return the UTF-8 encoding of {@link #$N()}, as a read only buffer.\n",
+                                methodDescriptor.name())
+                        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                        .returns(ByteBuffer.class)
+                        .addStatement("return getMessageUtf8($L)", index)
+                        .build());
+            }
+
+            // messages with arguments get a companion rendering them in
+            // batches.
+            String batchName = methodDescriptor.name() + "Batch";
+            if (methodDescriptor.returnsString()
+                    && methodDescriptor.sink().isEmpty()
+                    && !methodDescriptor.arguments().isEmpty()
+                    && !allMethodNames.contains(batchName)) {
+                generateBatchMethods(classBuilder, implName, batchName,
+                        pLanguageTags, messagesByLocale, index,
+                        methodDescriptor);
+            }
+
+            // messages returned as strings get a companion deferring their
+            // formatting, for logging guards.
+            String supplierName = methodDescriptor.name() + "Supplier";
+            if (methodDescriptor.returnsString()
+                    && methodDescriptor.sink().isEmpty()
+                    && !allMethodNames.contains(supplierName)) {
+                classBuilder.addMethod(generateSupplierMethod(supplierName,
+                        method));
+            }
+            index++;
+        }
+
+        return JavaFile.builder(pMessageBundleDescriptor.packageName(),
+                classBuilder.build()).build();
+    }
+
+    private void generateMessageBundleProperties(GeneratedBundle pBundle) {
+
+        MessageBundleDescriptor<MessageBundleMethodDescriptor> descriptor = pBundle
+                .getDescriptor();
+
+        // group the tagged methods by locale, so we can generate one Properties
+        // file per locale.
+        for (Entry<String, List<MessageBundleMethodDescriptor>> entry : groupByLocale(
+                descriptor).entrySet()) {
+
+            Properties properties = new Properties(entry.getValue().size());
+            for (MessageBundleMethodDescriptor methodDescriptor : entry
+                    .getValue()) {
+                properties.put(methodDescriptor.key(),
+                        methodDescriptor.message());
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                properties.store(output,
+                        "File Generated by Annotation Processing");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            pBundle.addResource(
+                    computePropertiesFileName(entry.getKey(),
+                            descriptor.getPropertiesBasePath(),
+                            descriptor.getPropertiesBaseName()),
+                    output.toByteArray());
+        }
+    }
+
+    /**
+     * Groups the messages of each method by locale. The methods are sorted by
+     * their keys and their position in the returned list is the dense index
+     * used to look their messages up in the generated tables.
+     *
+     * @return the grouped methods or null if two methods share the same key.
+     */
+    private List<Map<String, MessageBundleMethodDescriptor>> groupByMethod(
+            GeneratedBundle pBundle, List<String> pLanguageTags) {
+
+        List<Map<String, MessageBundleMethodDescriptor>> methods = pBundle
+                .getDescriptor().methodDescriptors().stream()
+                .collect(Collectors.groupingBy(
+                        MessageBundleMethodDescriptor::methodElement,
+                        Collectors.toMap(MessageBundleMethodDescriptor::locale,
+                                d -> d, (a, b) -> a)))
+                .values().stream()
+                .sorted(Comparator
+                        .comparing(m -> selectFallback(pLanguageTags, m).key()))
+                .collect(Collectors.toList());
+
+        for (int i = 1; i < methods.size(); i++) {
+            MessageBundleMethodDescriptor previous = selectFallback(
+                    pLanguageTags, methods.get(i - 1));
+            MessageBundleMethodDescriptor current = selectFallback(
+                    pLanguageTags, methods.get(i));
+            if (previous.key().equals(current.key())) {
+                pBundle.addError("The key '" + current.key()
+                        + "' is used by more than one method.",
+                        current.methodElement());
+                return null;
+            }
+        }
+        return methods;
+    }
+}
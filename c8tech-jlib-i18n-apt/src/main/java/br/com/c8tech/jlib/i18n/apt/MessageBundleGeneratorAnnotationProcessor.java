@@ -12,26 +12,30 @@
 package br.com.c8tech.jlib.i18n.apt;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Properties;
+import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
-import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
-import javax.lang.model.element.VariableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
 
@@ -39,40 +43,42 @@ import org.jooq.lambda.tuple.Tuple;
 import org.jooq.lambda.tuple.Tuple2;
 
 import com.google.auto.service.AutoService;
-import com.squareup.javapoet.JavaFile;
-import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.TypeName;
-import com.squareup.javapoet.TypeSpec;
-import com.squareup.javapoet.TypeSpec.Builder;
 
-import br.com.c8tech.jlib.i18n.AbstractMessageBundle;
+import br.com.c8tech.jlib.i18n.MessageTemplate;
 import br.com.c8tech.jlib.i18n.annotations.Message;
 import br.com.c8tech.jlib.i18n.annotations.MessageBundle;
 import br.com.c8tech.jlib.i18n.annotations.Messages;
 
 @AutoService(Processor.class)
 @SupportedSourceVersion(SourceVersion.RELEASE_11)
-@SupportedOptions({ "Properties.baseName", "Properties.basePath" })
+@SupportedOptions({ "Properties.baseName", "Properties.basePath",
+        "Bundle.format", MessageBundleGeneratorAnnotationProcessor.REGISTRY_OPTION })
 public class MessageBundleGeneratorAnnotationProcessor extends
         AbstractHierarchyAnnotationProcessor<MessageBundleMethodDescriptor, MessageBundleDescriptor<MessageBundleMethodDescriptor>> {
 
-    private static final String METHOD_PARAMETERS_REGEX = "(\\{(\\d)\\})";
+    /**
+     * The option naming the {@link br.com.c8tech.jlib.i18n.MessageBundleRegistry}
+     * to generate, which records every bundle of a compilation. Since the
+     * registry depends on every bundle, the processor is aggregating while
+     * it is set.
+     */
+    static final String REGISTRY_OPTION = "Bundle.registry";
 
-    private static final Pattern methodParameterFinderPattern = Pattern
-            .compile(METHOD_PARAMETERS_REGEX);
+    private static final Set<TypeName> INTEGRAL_TYPES = Set.of(TypeName.BYTE,
+            TypeName.SHORT, TypeName.INT, TypeName.LONG);
+
+    private final MessageBundleGenerator generator = new MessageBundleGenerator();
+
+    private boolean registryWritten;
 
     @Override
     protected Set<ElementKind> allowedTypeKinds() {
         return Set.of(ElementKind.INTERFACE);
     }
 
-    private String computePropertiesFileName(String pLocale,
-            String pPropertiesBasePath, String pPropertiesBaseName) {
-        return pPropertiesBasePath.concat("/").concat(pPropertiesBaseName)
-                .concat("_").concat(pLocale).concat(".properties");
-    }
-
     @Override
     protected MessageBundleMethodDescriptor createMethodAnnotatedDescriptor(
             Map<String, Object> pAnnotationValues,
@@ -93,9 +99,56 @@ public class MessageBundleGeneratorAnnotationProcessor extends
             }
         }
 
+        MessageTemplate template;
+        try {
+            template = MessageTemplate.parse(message);
+        } catch (IllegalArgumentException e) {
+            error("The message is not a valid template: " + e.getMessage(),
+                    pTypeAnnotatedMethodDescriptor.methodElement());
+            return null;
+        }
+
+        // resolve the types now, so the generation does not need the
+        // processing environment.
+        List<ParameterSpec> parameters = pTypeAnnotatedMethodDescriptor
+                .qualifiedParameterTypes().stream()
+                .map(p -> ParameterSpec.builder(TypeName.get(p.asType()),
+                        p.getSimpleName().toString()).build())
+                .collect(Collectors.toList());
+
+        int sinkIndex = -1;
+        for (int i = 0; i < parameters.size(); i++) {
+            if (MessageSink.of(parameters.get(i).type).isPresent()) {
+                if (sinkIndex >= 0) {
+                    error("Methods annotated with "
+                            + pTypeAnnotatedMethodDescriptor.annotationName()
+                            + " can write into a single sink parameter.",
+                            pTypeAnnotatedMethodDescriptor.methodElement());
+                    return null;
+                }
+                sinkIndex = i;
+            }
+        }
+        List<ParameterSpec> arguments = new ArrayList<>(parameters);
+        if (sinkIndex >= 0) {
+            arguments.remove(sinkIndex);
+        }
+
         return MessageBundleMethodDescriptor.builder()
                 .from(pTypeAnnotatedMethodDescriptor).message(message).key(key)
-                .locale(locale).build();
+                .locale(locale).template(template).parameters(parameters)
+                .arguments(arguments).sinkIndex(sinkIndex)
+                .sink(sinkIndex < 0 ? Optional.empty()
+                        : MessageSink.of(parameters.get(sinkIndex).type))
+                .returnTypeName(TypeName.get(
+                        pTypeAnnotatedMethodDescriptor.qualifiedReturnType()))
+                .returnsString(isAssignable(
+                        pTypeAnnotatedMethodDescriptor.qualifiedReturnType(),
+                        String.class))
+                .returnsThrowable(isAssignable(
+                        pTypeAnnotatedMethodDescriptor.qualifiedReturnType(),
+                        Throwable.class))
+                .build();
     }
 
     @Override
@@ -106,9 +159,31 @@ public class MessageBundleGeneratorAnnotationProcessor extends
                 "Properties.baseName", pTypeAnnotatedDescriptor.simpleName());
         String basePath = processingEnv.getOptions()
                 .getOrDefault("Properties.basePath", "META-INF/i18n");
+        String format = processingEnv.getOptions().getOrDefault("Bundle.format",
+                BundleFormat.PROPERTIES.name());
+        BundleFormat bundleFormat;
+        try {
+            bundleFormat = BundleFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            error("Unknown value '" + format
+                    + "' for option Bundle.format, expected one of "
+                    + Arrays.toString(BundleFormat.values()),
+                    pTypeAnnotatedDescriptor.targetType());
+            bundleFormat = BundleFormat.PROPERTIES;
+        }
 
         return MessageBundleDescriptor.builder().propertiesBaseName(basename)
+                .bundleFormat(bundleFormat)
                 .propertiesBasePath(basePath)
+                .defaultLocale(pTypeAnnotatedDescriptor.targetType()
+                        .getAnnotation(MessageBundle.class).locale())
+                .addLocales(pTypeAnnotatedDescriptor.targetType()
+                        .getAnnotation(MessageBundle.class).locales())
+                .isLightweightExceptions(pTypeAnnotatedDescriptor.targetType()
+                        .getAnnotation(MessageBundle.class)
+                        .lightweightExceptions())
+                .targetTypeName(TypeName
+                        .get(pTypeAnnotatedDescriptor.targetType().asType()))
                 .annotationClass(pTypeAnnotatedDescriptor.annotationClass())
                 .simpleName(pTypeAnnotatedDescriptor.simpleName())
                 .packageName(pTypeAnnotatedDescriptor.packageName())
@@ -118,114 +193,13 @@ public class MessageBundleGeneratorAnnotationProcessor extends
                 .build();
     }
 
-    private boolean generateMessageBundleImplementationClass(
-            MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor) {
-
-        Builder classBuilder = TypeSpec
-                .classBuilder(pMessageBundleDescriptor.simpleName() + "Impl")
-                .superclass(AbstractMessageBundle.class)
-                .addSuperinterface(TypeName
-                        .get(pMessageBundleDescriptor.targetType().asType()))
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
-
-        for (MessageBundleMethodDescriptor methodDescriptor : pMessageBundleDescriptor
-                .methodDescriptors()) {
-
-            List<ParameterSpec> parameters = new ArrayList<>(
-                    methodDescriptor.qualifiedParameterTypes().size());
-            for (VariableElement parameter : methodDescriptor
-                    .qualifiedParameterTypes()) {
-                ParameterSpec parameterSpec = ParameterSpec
-                        .builder(TypeName.get(parameter.asType()),
-                                parameter.getSimpleName().toString())
-                        .build();
-                parameters.add(parameterSpec);
-            }
-
-            MethodSpec method = MethodSpec
-                    .methodBuilder(methodDescriptor.name())
-                    .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                    .returns(TypeName
-                            .get(methodDescriptor.qualifiedReturnType()))
-                    .addParameters(parameters)
-                    .addStatement(" return $S", "Hello, JavaPoet!").build();
-
-            classBuilder.addMethod(method);
-        }
-
-        JavaFile javaFile = JavaFile
-                .builder(pMessageBundleDescriptor.packageName(),
-                        classBuilder.build())
-                .build();
-
-        try {
-            javaFile.writeTo(processingEnv.getFiler());
-        } catch (IOException e) {
-            return error(
-                    "Failure while saving file: pMessageBundleDescriptor.absolutePath()",
-                    pMessageBundleDescriptor.targetType(), e);
-        }
-
-        return true;
-    }
-
-    private boolean generateMessageBundleProperties(
-            MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor) {
-
-        // group the tagged methods by locale, so we can generate one Properties
-        // file per locale.
-        Map<String, List<MessageBundleMethodDescriptor>> group = pMessageBundleDescriptor
-                .methodDescriptors().stream().collect(Collectors
-                        .groupingBy(MessageBundleMethodDescriptor::locale));
-
-        for (Entry<String, List<MessageBundleMethodDescriptor>> entry : group
-                .entrySet()) {
-
-            if (!generateMessageBundlePropertiesByLocale(entry.getKey(),
-                    pMessageBundleDescriptor, entry.getValue())) {
-                return false;
-            }
-        }
-
-        return info("All properties files was sucessfully generated. ",
-                pMessageBundleDescriptor.targetType());
-    }
-
-    private boolean generateMessageBundlePropertiesByLocale(String pLocale,
-            MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor,
-            List<MessageBundleMethodDescriptor> pMessageBundleMethodDescriptors) {
-        try {
-
-            String resourceName = computePropertiesFileName(pLocale,
-                    pMessageBundleDescriptor.getPropertiesBasePath(),
-                    pMessageBundleDescriptor.getPropertiesBaseName());
-
-            List<Element> methods = new ArrayList<>();
-            Properties properties = new Properties(
-                    pMessageBundleMethodDescriptors.size());
-            for (MessageBundleMethodDescriptor methodDescriptor : pMessageBundleMethodDescriptors) {
-                properties.put(methodDescriptor.key(),
-                        methodDescriptor.message());
-                methods.add(methodDescriptor.methodElement());
-            }
-
-            FileObject f = processingEnv.getFiler().createResource(
-                    StandardLocation.CLASS_OUTPUT, "", resourceName,
-                    methods.stream().toArray(Element[]::new));
-
-            properties.store(f.openOutputStream(),
-                    "File Generated by Annotation Processing");
-            return info(
-                    "Properties file for locale '" + pLocale
-                            + " was sucessfully generated at '"
-                            + f.toUri().getPath() + "'",
-                    pMessageBundleDescriptor.targetType());
-        } catch (IOException e) {
-            return error(
-                    "An error occurred while trying to save a properties file for '"
-                            + pMessageBundleDescriptor.getPropertiesBaseName(),
-                    pMessageBundleDescriptor.targetType(), e);
-        }
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> options = new HashSet<>(super.getSupportedOptions());
+        options.add(processingEnv.getOptions().containsKey(REGISTRY_OPTION)
+                ? "org.gradle.annotation.processing.aggregating"
+                : "org.gradle.annotation.processing.isolating");
+        return options;
     }
 
     @Override
@@ -247,14 +221,39 @@ public class MessageBundleGeneratorAnnotationProcessor extends
 
         // check the number of parameter of both message and method
 
-        if (!parameterMatched(pMethodDescriptor.message(),
-                pMethodDescriptor.qualifiedParameterTypes().size(),
-                pMethodDescriptor, pMethodElement))
+        if (!parameterMatched(pMethodDescriptor.template(),
+                pMethodDescriptor.arguments().size(), pMethodDescriptor,
+                pMethodElement))
             return false;
 
-        if (!isAssignable(pMethodDescriptor.qualifiedReturnType(), String.class)
-                && !isAssignable(pMethodDescriptor.qualifiedReturnType(),
-                        Throwable.class)) {
+        // plural cases are chosen by comparisons compiled for integers
+        Optional<MessageTemplate.Token> plural = pMethodDescriptor.template()
+                .flattenTokens()
+                .filter(t -> "plural".equals(t.getFormatType()))
+                .filter(t -> !INTEGRAL_TYPES.contains(pMethodDescriptor
+                        .arguments().get(t.getArgumentIndex()).type))
+                .findFirst();
+        if (plural.isPresent()) {
+            error("The argument {" + plural.get().getArgumentIndex()
+                    + "} of a plural element must be a byte, short, int or long.",
+                    pMethodElement);
+            result = false;
+        }
+
+        if (pMethodDescriptor.sink().isPresent()) {
+            TypeName returnType = pMethodDescriptor.returnTypeName();
+            if (!returnType.equals(TypeName.VOID)
+                    && !returnType.equals(pMethodDescriptor.sink().get()
+                            .getType())) {
+                error("method annotated with "
+                        + pMethodDescriptor.annotationName()
+                        + " writing into a sink must return void or the sink type",
+                        pMethodElement);
+                result = false;
+            }
+        } else if (pMethodDescriptor.returnsThrowable()) {
+            result = isValidThrowableType(pMethodDescriptor, pMethodElement);
+        } else if (!pMethodDescriptor.returnsString()) {
             error("method annotated with " + pMethodDescriptor.annotationName()
                     + " must return java.lang.String or a subclass of java.lang.Throwable",
                     pMethodElement);
@@ -265,18 +264,68 @@ public class MessageBundleGeneratorAnnotationProcessor extends
 
     }
 
-    private boolean parameterMatched(String pMessage, int pMethodCount,
+    /**
+     * The generated factory calls the constructor taking the message, either
+     * directly or from an anonymous subclass for lightweight exceptions.
+     */
+    private boolean isValidThrowableType(
             MessageBundleMethodDescriptor pMethodDescriptor,
             ExecutableElement pMethodElement) {
-        Matcher m = methodParameterFinderPattern.matcher(pMessage);
-        int count = 0;
-        while (m.find())
-            count++;
-        if (pMethodCount == count) {
+
+        TypeElement type = (TypeElement) processingEnv.getTypeUtils()
+                .asElement(pMethodDescriptor.qualifiedReturnType());
+        TypeMirror string = processingEnv.getElementUtils()
+                .getTypeElement(String.class.getCanonicalName()).asType();
+        boolean messageConstructor = ElementFilter
+                .constructorsIn(type.getEnclosedElements()).stream()
+                .anyMatch(c -> c.getModifiers().contains(Modifier.PUBLIC)
+                        && c.getParameters().size() == 1
+                        && processingEnv.getTypeUtils().isSameType(
+                                c.getParameters().get(0).asType(), string));
+        if (type.getModifiers().contains(Modifier.ABSTRACT)
+                || !messageConstructor) {
+            error("The exception returned by a method annotated with "
+                    + pMethodDescriptor.annotationName()
+                    + " must be a concrete class with a public constructor taking the message.",
+                    pMethodElement);
+            return false;
+        }
+        MessageBundle bundle = pMethodElement.getEnclosingElement()
+                .getAnnotation(MessageBundle.class);
+        if (bundle != null && bundle.lightweightExceptions()
+                && type.getModifiers().contains(Modifier.FINAL)) {
+            error("The exception returned by a method annotated with "
+                    + pMethodDescriptor.annotationName()
+                    + " can't be final when lightweightExceptions is enabled.",
+                    pMethodElement);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean parameterMatched(MessageTemplate pTemplate,
+            int pMethodCount, MessageBundleMethodDescriptor pMethodDescriptor,
+            ExecutableElement pMethodElement) {
+        BitSet used = new BitSet(pMethodCount);
+        for (MessageTemplate.Token token : pTemplate.flattenTokens()
+                .collect(Collectors.toList())) {
+            if (!token.isArgument()) {
+                continue;
+            }
+            if (token.getArgumentIndex() >= pMethodCount) {
+                error("The placeholder " + token.getText()
+                        + " does not match any parameter of the method annotated with "
+                        + pMethodDescriptor.annotationName() + ".",
+                        pMethodElement);
+                return false;
+            }
+            used.set(token.getArgumentIndex());
+        }
+        if (used.cardinality() == pMethodCount) {
             return true;
         } else {
             error("Methods annotated with " + pMethodDescriptor.annotationName()
-                    + " must have number of parameters equal to the number of placeholders {d} in message.",
+                    + " must use every parameter in a placeholder {d} of the message.",
                     pMethodElement);
             return false;
         }
@@ -285,24 +334,115 @@ public class MessageBundleGeneratorAnnotationProcessor extends
     @Override
     protected boolean processMessageBundleDescriptor(
             MessageBundleDescriptor<MessageBundleMethodDescriptor> pMessageBundleDescriptor) {
+        return writeGeneratedBundle(
+                generator.generate(pMessageBundleDescriptor));
+    }
+
+    /**
+     * Generates the bundles in parallel and then writes them one by one,
+     * since neither the {@code Filer} nor the {@code Messager} are thread
+     * safe.
+     */
+    @Override
+    protected boolean processTypeAnnotatedDescriptors(
+            List<MessageBundleDescriptor<MessageBundleMethodDescriptor>> pDescriptors) {
+
+        List<GeneratedBundle> bundles = pDescriptors.parallelStream()
+                .map(generator::generate).collect(Collectors.toList());
+
         boolean result = true;
+        for (GeneratedBundle bundle : bundles) {
+            result &= writeGeneratedBundle(bundle);
+        }
+
+        String registryName = processingEnv.getOptions().get(REGISTRY_OPTION);
+        // the registry can be written once, so it only records the bundles
+        // of the first round.
+        if (registryName != null && !registryWritten) {
+            registryWritten = true;
+            result &= writeBundleRegistry(new BundleRegistry(
+                    ClassName.bestGuess(registryName),
+                    bundles.stream().filter(b -> !b.hasErrors())
+                            .collect(Collectors.toList())),
+                    pDescriptors);
+        }
+        return result;
+    }
 
-        // generate the properties file, one for each locale extracted from the
-        // message tagged methods.
-        if (generateMessageBundleProperties(pMessageBundleDescriptor)) {
+    private boolean writeBundleRegistry(BundleRegistry pRegistry,
+            List<MessageBundleDescriptor<MessageBundleMethodDescriptor>> pDescriptors) {
 
-            if (!generateMessageBundleImplementationClass(
-                    pMessageBundleDescriptor)) {
-                result = error(
-                        "Failure occurred while generating the ResourceBundle access implementation.",
-                        pMessageBundleDescriptor.targetType());
+        if (pRegistry.isEmpty()) {
+            return true;
+        }
+        TypeElement[] targetTypes = pDescriptors.stream()
+                .map(MessageBundleDescriptor::targetType)
+                .toArray(TypeElement[]::new);
+        String registryName = pRegistry.getClassName().reflectionName();
+        try {
+            pRegistry.generateSource().writeTo(processingEnv.getFiler());
+            writeClassOutput(BundleRegistry.SERVICE_RESOURCE,
+                    (registryName + "\n").getBytes(StandardCharsets.UTF_8),
+                    targetTypes);
+            writeClassOutput(
+                    NativeImageMetadata.computeResourceName(registryName,
+                            "native-image.properties"),
+                    NativeImageMetadata
+                            .generateProperties(List.of(registryName)),
+                    targetTypes);
+        } catch (IOException e) {
+            return error("Failure while saving the message bundle registry",
+                    targetTypes[0], e);
+        }
+        return true;
+    }
+
+    private void writeClassOutput(String pName, byte[] pContent,
+            TypeElement... pOriginatingElements) throws IOException {
+        FileObject f = processingEnv.getFiler().createResource(
+                StandardLocation.CLASS_OUTPUT, "", pName,
+                pOriginatingElements);
+        try (OutputStream output = f.openOutputStream()) {
+            output.write(pContent);
+        }
+    }
+
+    private boolean writeGeneratedBundle(GeneratedBundle pBundle) {
+
+        TypeElement targetType = pBundle.getDescriptor().targetType();
+        if (pBundle.hasErrors()) {
+            pBundle.getErrors().forEach(e -> error(e.v1, e.v2));
+            return error(
+                    "Failure occurred while generating the ResourceBundle access implementation.",
+                    targetType);
+        }
+
+        for (GeneratedBundle.Resource resource : pBundle.getResources()) {
+            try {
+                FileObject f = processingEnv.getFiler().createResource(
+                        StandardLocation.CLASS_OUTPUT, "", resource.getName(),
+                        targetType);
+                try (OutputStream output = f.openOutputStream()) {
+                    output.write(resource.getContent());
+                }
+                info("Resource '" + resource.getName()
+                        + "' was sucessfully generated at '"
+                        + f.toUri().getPath() + "'", targetType);
+            } catch (IOException e) {
+                return error("An error occurred while trying to save '"
+                        + resource.getName() + "'", targetType, e);
             }
-        } else
-            result = error(
-                    "Failure occurred while generating the ResourceBundle locale properties files.",
-                    pMessageBundleDescriptor.targetType());
+        }
 
-        return result;
+        try {
+            pBundle.getSource().writeTo(processingEnv.getFiler());
+        } catch (IOException e) {
+            return error("Failure while saving the implementation of '"
+                    + pBundle.getDescriptor().qualifiedName() + "'",
+                    targetType, e);
+        }
+
+        return true;
     }
 
 }
@@ -11,9 +11,17 @@
  */
 package br.com.c8tech.jlib.i18n.apt;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.immutables.value.Value;
 import org.immutables.value.Value.Style.ImplementationVisibility;
 
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+
+import br.com.c8tech.jlib.i18n.MessageTemplate;
+
 import br.com.c8tech.jlib.i18n.apt.ImmutableMessageBundleMethodDescriptor.Builder;
 
 @Value.Immutable
@@ -28,10 +36,39 @@ public interface MessageBundleMethodDescriptor
         return ImmutableMessageBundleMethodDescriptor.builder();
     }
 
+    /**
+     * @return the parameters referenced by the indexes of the template, that
+     *         is all of them but the sink.
+     */
+    List<ParameterSpec> arguments();
+
     String key();
 
     String locale();
 
     String message();
 
+    /**
+     * @return the parameters of the method, resolved by the processor.
+     */
+    List<ParameterSpec> parameters();
+
+    boolean returnsString();
+
+    boolean returnsThrowable();
+
+    Optional<MessageSink> sink();
+
+    /**
+     * @return the position of the sink parameter or -1 if there is none.
+     */
+    int sinkIndex();
+
+    /**
+     * @return the parsed message.
+     */
+    MessageTemplate template();
+
+    TypeName returnTypeName();
+
 }
@@ -0,0 +1,63 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.apt;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.TypeName;
+
+/**
+ * The parameter types a message method may write its message into instead of
+ * returning it. A sink parameter is not a message argument, so the indexes of
+ * the template skip it.
+ */
+public enum MessageSink {
+
+    /**
+     * Characters are appended to an {@link Appendable}. Its
+     * {@link java.io.IOException} is rethrown as an
+     * {@link java.io.UncheckedIOException}.
+     */
+    APPENDABLE(Appendable.class),
+
+    /**
+     * Bytes are encoded as UTF-8 into a {@link ByteBuffer}, starting at its
+     * position.
+     */
+    BYTE_BUFFER(ByteBuffer.class),
+
+    /**
+     * Characters are appended to a {@link StringBuilder}.
+     */
+    STRING_BUILDER(StringBuilder.class);
+
+    public static Optional<MessageSink> of(TypeName pType) {
+        for (MessageSink sink : values()) {
+            if (sink.type.equals(pType)) {
+                return Optional.of(sink);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private final ClassName type;
+
+    MessageSink(Class<?> pType) {
+        type = ClassName.get(pType);
+    }
+
+    public ClassName getType() {
+        return type;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.apt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the GraalVM native-image configuration of the generated classes,
+ * which {@code native-image} picks up from any directory under
+ * {@code META-INF/native-image} of the class path.
+ * <p>
+ * Only classes holding constants are initialized at build time, so their
+ * tables are stored in the image heap. The implementations stay initialized
+ * at run time, since they read the metrics and cache settings from the
+ * system properties of the running program.
+ */
+final class NativeImageMetadata {
+
+    private static final String DIRECTORY = "META-INF/native-image/br.com.c8tech.jlib.i18n/";
+
+    /**
+     * @param pClassName
+     *                       the qualified name of the generated class the
+     *                       configuration belongs to.
+     * @param pFileName
+     *                       the name of the configuration file.
+     * @return the name of the resource holding the configuration.
+     */
+    static String computeResourceName(String pClassName, String pFileName) {
+        return DIRECTORY + pClassName + "/" + pFileName;
+    }
+
+    /**
+     * @param pClassNames
+     *                        the binary names of the classes to initialize at
+     *                        build time.
+     * @return the content of a {@code native-image.properties} file.
+     */
+    static byte[] generateProperties(List<String> pClassNames) {
+        return ("Args = --initialize-at-build-time="
+                + String.join(",", pClassNames) + "\n")
+                        .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Allows the implementation to be created by reflection, for frameworks
+     * loading it by name. The generated code itself uses no reflection.
+     *
+     * @param pImplName
+     *                      the binary name of the implementation class.
+     * @return the content of a {@code reflect-config.json} file.
+     */
+    static byte[] generateReflectConfig(String pImplName) {
+        return ("[\n  {\n    \"name\": \"" + pImplName + "\",\n"
+                + "    \"methods\": [\n"
+                + "      { \"name\": \"<init>\", \"parameterTypes\": [] },\n"
+                + "      { \"name\": \"<init>\", \"parameterTypes\": [ \"java.util.Locale\" ] }\n"
+                + "    ]\n  }\n]\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param pResourceNames
+     *                           the resources read at run time.
+     * @return the content of a {@code resource-config.json} file.
+     */
+    static byte[] generateResourceConfig(List<String> pResourceNames) {
+        return ("{\n  \"resources\": {\n    \"includes\": [\n"
+                + pResourceNames.stream()
+                        .map(r -> "      { \"pattern\": \"\\\\Q" + r
+                                + "\\\\E\" }")
+                        .collect(Collectors.joining(",\n"))
+                + "\n    ]\n  }\n}\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private NativeImageMetadata() {
+    }
+}
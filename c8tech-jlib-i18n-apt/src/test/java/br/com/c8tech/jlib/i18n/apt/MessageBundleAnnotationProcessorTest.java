@@ -11,25 +11,51 @@
  */
 package br.com.c8tech.jlib.i18n.apt;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
 import org.joor.CompileOptions;
 import org.joor.Reflect;
 import org.joor.ReflectException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import br.com.c8tech.jlib.i18n.MessageBatch;
+import br.com.c8tech.jlib.i18n.MessageBundleRegistry;
+import br.com.c8tech.jlib.i18n.MessageBundleReloader;
 import br.com.c8tech.jlib.i18n.apt.MessageBundleGeneratorAnnotationProcessor;
 
 public class MessageBundleAnnotationProcessorTest {
 
     @Test
     @DisplayName("Fails when annotation is used on classes")
-    public void ensureAnnotationProcessorFailsUsingWithClass()
-            throws Exception {
+    public void ensureAnnotationProcessorFailsUsingWithClass(
+            @TempDir Path pDirectory) throws Exception {
         MessageBundleGeneratorAnnotationProcessor processor = new MessageBundleGeneratorAnnotationProcessor();
         try {
             Reflect.compile("br.com.c8tech.jlib.i18n.apt.NoInterface",
@@ -39,7 +65,8 @@ public class MessageBundleAnnotationProcessorTest {
                             + "@MessageBundle "
                             + "public class SourceClassNOK {"
                             + " private void m() {}" + "}",
-                    new CompileOptions().options("-source", "8")
+                    new CompileOptions().options("-source", "8", "-d",
+                            pDirectory.toString())
                             .processors(processor))
                     .create().get();
 
@@ -51,8 +78,8 @@ public class MessageBundleAnnotationProcessorTest {
     }
 
     @Test
-    public void ensureAnnotationProcessorCreatesResourceBundleClassAndPropertiesWithMultipleLocales()
-            throws Exception {
+    public void ensureAnnotationProcessorCreatesResourceBundleClassAndPropertiesWithMultipleLocales(
+            @TempDir Path pDirectory) throws Exception {
         MessageBundleGeneratorAnnotationProcessor processor = new MessageBundleGeneratorAnnotationProcessor();
         try {
             Reflect.compile(
@@ -71,18 +98,23 @@ public class MessageBundleAnnotationProcessorTest {
                             + "    @Message(value = \"funcionou {0} {1}!\", locale = \"pt-BR\")\n"
                             + "    public String m3(String pZero, String pOne);\n"
                             + "}",
-                    new CompileOptions().options("-source", "8")
+                    new CompileOptions().options("-source", "8", "-d",
+                            pDirectory.toString())
                             .processors(processor))
                     .type();
         } catch (ReflectException e) {
         }
 
         assertTrue(processor.isProcessed());
+        // resources go to the class output, never to the working directory
+        assertTrue(Files.exists(pDirectory.resolve(
+                "META-INF/i18n/SourceResourceBundleWithTwoMethods_pt-BR.properties")));
 
     }
 
     @Test
-    public void ensureAnnotationProcessorCreatesResourceBundleClassAndPropertiesWithDefaultLocale() {
+    public void ensureAnnotationProcessorCreatesResourceBundleClassAndPropertiesWithDefaultLocale(
+            @TempDir Path pDirectory) {
         MessageBundleGeneratorAnnotationProcessor processor = new MessageBundleGeneratorAnnotationProcessor();
         try {
             Reflect.compile(
@@ -97,7 +129,8 @@ public class MessageBundleAnnotationProcessorTest {
                             + "    @Message(value = \"funcionou {0} {1}!\")\n"
                             + "    public String m2(String pZero, String pOne);\n"
                             + "}",
-                    new CompileOptions().options("-source", "11")
+                    new CompileOptions().options("-source", "11", "-d",
+                            pDirectory.toString())
                             .processors(processor))
                     .type();
         } catch (ReflectException e) {
@@ -108,8 +141,8 @@ public class MessageBundleAnnotationProcessorTest {
     }
 
     @Test
-    public void ensureAnnotationProcessorFailsWithWrongMethodReturn()
-            throws Exception {
+    public void ensureAnnotationProcessorFailsWithWrongMethodReturn(
+            @TempDir Path pDirectory) throws Exception {
         MessageBundleGeneratorAnnotationProcessor processor = new MessageBundleGeneratorAnnotationProcessor();
         Assertions.assertThrows(org.joor.ReflectException.class, () -> {
             Reflect.compile(
@@ -121,15 +154,16 @@ public class MessageBundleAnnotationProcessorTest {
                             + "public interface SourceEmptyResourceBundle {"
                             + "@Message(\" worked {0} ! \")"
                             + " public void m(String pZero);" + "}",
-                    new CompileOptions().options("-source", "8")
+                    new CompileOptions().options("-source", "8", "-d",
+                            pDirectory.toString())
                             .processors(processor))
                     .type();
         });
     }
 
     @Test
-    public void ensureAnnotationProcessorWillFailWithouJava8Plus()
-            throws Exception {
+    public void ensureAnnotationProcessorWillFailWithouJava8Plus(
+            @TempDir Path pDirectory) throws Exception {
         MessageBundleGeneratorAnnotationProcessor processor = new MessageBundleGeneratorAnnotationProcessor();
         try {
             Reflect.compile("br.com.c8tech.jlib.i18n.apt.Source7NOK",
@@ -138,7 +172,8 @@ public class MessageBundleAnnotationProcessorTest {
                             + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
                             + "@MessageBundle " + "public class Source7NOK {"
                             + " void m() {}" + "}",
-                    new CompileOptions().options("-source", "7")
+                    new CompileOptions().options("-source", "7", "-d",
+                            pDirectory.toString())
                             .processors(processor))
                     .create().get();
 
@@ -147,4 +182,877 @@ public class MessageBundleAnnotationProcessorTest {
             assertFalse(processor.isProcessed());
         }
     }
+
+    @Test
+    public void ensureGeneratedImplementationFormatsMessagesPerLocale(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.FormattedBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface FormattedBundle {\n"
+                                + "    @Message(value = \"funcionou {1} e {0}!\", locale = \"pt-BR\")\n"
+                                + "    @Message(value = \"worked {0} and {1}!\", locale = \"en-US\")\n"
+                                + "    public String m1(String pZero, int pOne);\n"
+                                + "\n"
+                                + "    @Message(value = \"static\")\n"
+                                + "    public String m2();\n" + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.FormattedBundleImpl");
+        Object enUs = impl.getConstructor(Locale.class)
+                .newInstance(Locale.forLanguageTag("en-US"));
+        Object ptBr = impl.getConstructor(Locale.class)
+                .newInstance(Locale.forLanguageTag("pt-BR"));
+        Object fallback = impl.getConstructor(Locale.class)
+                .newInstance(Locale.JAPAN);
+
+        assertThat(impl.getMethod("m1", String.class, int.class).invoke(enUs,
+                "a", 1)).isEqualTo("worked a and 1!");
+        assertThat(impl.getMethod("m1", String.class, int.class).invoke(ptBr,
+                "a", 1)).isEqualTo("funcionou 1 e a!");
+        assertThat(impl.getMethod("m1", String.class, int.class)
+                .invoke(fallback, "a", 1)).isEqualTo("worked a and 1!");
+        assertThat(impl.getMethod("m2").invoke(ptBr)).isEqualTo("static");
+        assertThat(impl.getMethod("getMessage", String.class).invoke(ptBr,
+                "m1")).isEqualTo("funcionou {1} e {0}!");
+        assertThat(impl.getMethod("getMessage", int.class).invoke(enUs, 1))
+                .isEqualTo("static");
+
+        Supplier<?> supplier = (Supplier<?>) impl
+                .getMethod("m1Supplier", String.class, int.class)
+                .invoke(ptBr, "b", 2);
+        assertThat(supplier.get()).isEqualTo("funcionou 2 e b!");
+    }
+
+    @Test
+    public void ensureGeneratedImplementationReadsCompactBundle(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.BinaryBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface BinaryBundle {\n"
+                                + "    @Message(value = \"estático\", locale = \"pt-BR\")\n"
+                                + "    @Message(value = \"static\", locale = \"en-US\")\n"
+                                + "    public String m1();\n"
+                                + "    @Message(value = \"é '{'estático'}'\", locale = \"pt-BR\")\n"
+                                + "    @Message(value = \"it''s '{'static'}'\", locale = \"en-US\")\n"
+                                + "    public String m2();\n" + "}"),
+                "-ABundle.format=binary");
+
+        assertThat(loader.getResource("META-INF/i18n/BinaryBundle.cmb"))
+                .isNotNull();
+        assertThat(loader
+                .getResource("META-INF/i18n/BinaryBundle_en-US.properties"))
+                        .isNull();
+        assertThat(new String(loader.getResourceAsStream(
+                "META-INF/native-image/br.com.c8tech.jlib.i18n/br.com.c8tech.jlib.i18n.apt.BinaryBundleImpl/resource-config.json")
+                .readAllBytes(), StandardCharsets.UTF_8))
+                        .contains("\"\\\\QMETA-INF/i18n/BinaryBundle.cmb\\\\E\"");
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.BinaryBundleImpl");
+        Object ptBr = impl.getConstructor(Locale.class)
+                .newInstance(Locale.forLanguageTag("pt-BR"));
+        assertThat(impl.getMethod("m1").invoke(ptBr)).isEqualTo("estático");
+
+        ByteBuffer encoded = (ByteBuffer) impl.getMethod("m1Utf8")
+                .invoke(ptBr);
+        assertThat(encoded.isReadOnly()).isTrue();
+        assertThat(StandardCharsets.UTF_8.decode(encoded).toString())
+                .isEqualTo("estático");
+        encoded = (ByteBuffer) impl.getMethod("m2Utf8")
+                .invoke(impl.getConstructor(Locale.class)
+                        .newInstance(Locale.US));
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        assertThat(bytes).isEqualTo(
+                "it's {static}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void ensureAllMessageBundlesOfARoundAreGenerated(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.FirstBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface FirstBundle {\n"
+                                + "    @Message(value = \"first {0}\")\n"
+                                + "    public String m(String pZero);\n"
+                                + "}",
+                        "br.com.c8tech.jlib.i18n.apt.SecondBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface SecondBundle {\n"
+                                + "    @Message(value = \"second\")\n"
+                                + "    public String m();\n"
+                                + "}"));
+
+        Class<?> first = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.FirstBundleImpl");
+        Class<?> second = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.SecondBundleImpl");
+
+        assertThat(first.getMethod("m", String.class)
+                .invoke(first.getConstructor().newInstance(), "a"))
+                        .isEqualTo("first a");
+        assertThat(second.getMethod("m")
+                .invoke(second.getConstructor().newInstance()))
+                        .isEqualTo("second");
+    }
+
+    @Test
+    public void ensureGeneratedImplementationFormatsTypedAndQuotedTemplates(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.TemplateBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface TemplateBundle {\n"
+                                + "    @Message(value = \"it''s '{'{10}'}' of {0}{1}{2}{3}{4}{5}{6}{7}{8}{9}\")\n"
+                                + "    public String quoted(String a0, String a1, String a2, String a3,"
+                                + " String a4, String a5, String a6, String a7, String a8, String a9,"
+                                + " String a10);\n"
+                                + "\n"
+                                + "    @Message(value = \"{0,number,integer} files\")\n"
+                                + "    public String typed(int pCount);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.TemplateBundleImpl");
+        Object bundle = impl.getConstructor(Locale.class)
+                .newInstance(Locale.US);
+        Class<?>[] types = new Class<?>[11];
+        Arrays.fill(types, String.class);
+
+        assertThat(impl.getMethod("quoted", types).invoke(bundle, "a", "b",
+                "c", "d", "e", "f", "g", "h", "i", "j", "k"))
+                        .isEqualTo("it's {k} of abcdefghij");
+        assertThat(impl.getMethod("typed", int.class).invoke(bundle, 1234))
+                .isEqualTo("1,234 files");
+    }
+
+    @Test
+    public void ensureUntypedArgumentsOfMixedTemplatesAreAppended(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.MixedBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface MixedBundle {\n"
+                                + "    @Message(value = \"{0} items at {1,time}\")\n"
+                                + "    public String items(Integer pCount, java.util.Date pAt);\n"
+                                + "\n"
+                                + "    @Message(value = \"{0} items at {1,time}\")\n"
+                                + "    public void toBuilder(StringBuilder pOut, Integer pCount, java.util.Date pAt);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.MixedBundleImpl");
+        Object bundle = impl.getConstructor(Locale.class)
+                .newInstance(Locale.US);
+        Date midnight = new Date(0);
+        String expected = "1234 items at " + new MessageFormat("{0,time}",
+                Locale.US).format(new Object[] { midnight });
+
+        assertThat(impl.getMethod("items", Integer.class, Date.class)
+                .invoke(bundle, 1234, midnight)).isEqualTo(expected);
+        StringBuilder builder = new StringBuilder();
+        impl.getMethod("toBuilder", StringBuilder.class, Integer.class,
+                Date.class).invoke(bundle, builder, 1234, midnight);
+        assertThat(builder.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    public void ensureStaticMessagesAreRenderedWithTheirQuotes(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.StaticBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface StaticBundle {\n"
+                                + "    @Message(value = \"It''s '{'static'}'\")\n"
+                                + "    public String quoted();\n"
+                                + "\n"
+                                + "    @Message(value = \"It''s '{'static'}'\")\n"
+                                + "    public void toAppendable(Appendable pOut);\n"
+                                + "\n"
+                                + "    @Message(value = \"It''s '{'static'}'\")\n"
+                                + "    public void toBuffer(java.nio.ByteBuffer pBuffer);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.StaticBundleImpl");
+        Object bundle = impl.getConstructor().newInstance();
+
+        assertThat(impl.getMethod("quoted").invoke(bundle))
+                .isEqualTo("It's {static}");
+        assertThat(impl.getMethod("getMessage", String.class).invoke(bundle,
+                "quoted")).isEqualTo("It's {static}");
+        StringWriter writer = new StringWriter();
+        impl.getMethod("toAppendable", Appendable.class).invoke(bundle,
+                writer);
+        assertThat(writer.toString()).isEqualTo("It's {static}");
+
+        byte[] expected = "It's {static}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encoded = (ByteBuffer) impl.getMethod("quotedUtf8")
+                .invoke(bundle);
+        byte[] actual = new byte[encoded.remaining()];
+        encoded.get(actual);
+        assertThat(actual).isEqualTo(expected);
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        impl.getMethod("toBuffer", ByteBuffer.class).invoke(bundle, buffer);
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position()))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void ensureGeneratedImplementationWritesIntoSinks(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.SinkBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface SinkBundle {\n"
+                                + "    @Message(value = \"ação {0} de {1}\")\n"
+                                + "    public void toBuffer(java.nio.ByteBuffer pBuffer, String pZero, int pOne);\n"
+                                + "\n"
+                                + "    @Message(value = \"worked {0}\")\n"
+                                + "    public StringBuilder toBuilder(StringBuilder pBuilder, long pZero);\n"
+                                + "\n"
+                                + "    @Message(value = \"static\")\n"
+                                + "    public void toAppendable(Appendable pOut);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.SinkBundleImpl");
+        Object bundle = impl.getConstructor().newInstance();
+
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        impl.getMethod("toBuffer", ByteBuffer.class, String.class, int.class)
+                .invoke(bundle, buffer, "x", 2);
+        assertThat(new String(buffer.array(), 0, buffer.position(),
+                StandardCharsets.UTF_8)).isEqualTo("ação x de 2");
+
+        buffer.clear();
+        impl.getMethod("toBuffer", ByteBuffer.class, String.class, int.class)
+                .invoke(bundle, buffer, null, 2);
+        assertThat(new String(buffer.array(), 0, buffer.position(),
+                StandardCharsets.UTF_8)).isEqualTo("ação null de 2");
+
+        ByteBuffer small = ByteBuffer.allocate(12).put((byte) '>');
+        InvocationTargetException overflow = Assertions.assertThrows(
+                InvocationTargetException.class,
+                () -> impl.getMethod("toBuffer", ByteBuffer.class,
+                        String.class, int.class).invoke(bundle, small,
+                                "long enough", 2));
+        assertThat(overflow.getCause())
+                .isInstanceOf(BufferOverflowException.class);
+        assertThat(small.position()).isEqualTo(1);
+
+        StringBuilder builder = new StringBuilder("> ");
+        assertThat(impl.getMethod("toBuilder", StringBuilder.class, long.class)
+                .invoke(bundle, builder, 7L)).isSameAs(builder);
+        assertThat(builder.toString()).isEqualTo("> worked 7");
+
+        StringWriter writer = new StringWriter();
+        impl.getMethod("toAppendable", Appendable.class).invoke(bundle,
+                writer);
+        assertThat(writer.toString()).isEqualTo("static");
+    }
+
+    @Test
+    public void ensureGeneratedImplementationBuildsExceptions(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.ExceptionBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface ExceptionBundle {\n"
+                                + "    @Message(value = \"invalid {0}\")\n"
+                                + "    public IllegalArgumentException invalid(String pZero);\n"
+                                + "}",
+                        "br.com.c8tech.jlib.i18n.apt.LightweightBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle(lightweightExceptions = true) \n"
+                                + "public interface LightweightBundle {\n"
+                                + "    @Message(value = \"invalid {0}\")\n"
+                                + "    public IllegalStateException invalid(String pZero);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.ExceptionBundleImpl");
+        Throwable regular = (Throwable) impl.getMethod("invalid", String.class)
+                .invoke(impl.getConstructor().newInstance(), "x");
+        assertThat(regular).isExactlyInstanceOf(IllegalArgumentException.class)
+                .hasMessage("invalid x");
+        assertThat(regular.getStackTrace()).isNotEmpty();
+
+        Class<?> lightweightImpl = loader.loadClass(
+                "br.com.c8tech.jlib.i18n.apt.LightweightBundleImpl");
+        Throwable lightweight = (Throwable) lightweightImpl
+                .getMethod("invalid", String.class)
+                .invoke(lightweightImpl.getConstructor().newInstance(), "y");
+        assertThat(lightweight).isInstanceOf(IllegalStateException.class)
+                .hasMessage("invalid y");
+        assertThat(lightweight.getStackTrace()).isEmpty();
+    }
+
+    @Test
+    public void ensureGeneratedImplementationFormatsPrimitiveArguments(
+            @TempDir Path pDirectory) throws Exception {
+        String pattern = "{0} {1,number,integer} {2,number,#.##} {3} {4} {5}";
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.PrimitiveBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface PrimitiveBundle {\n"
+                                + "    @Message(value = \"" + pattern + "\")\n"
+                                + "    public String toText(int a, long b, double c, boolean d, char e, short f);\n"
+                                + "\n"
+                                + "    @Message(value = \"" + pattern + "\")\n"
+                                + "    public void toBuffer(java.nio.ByteBuffer pBuffer, int a, long b, double c, boolean d, char e, short f);\n"
+                                + "\n"
+                                + "    @Message(value = \"" + pattern + "\")\n"
+                                + "    public void toAppendable(Appendable e, int a, long b, double c, boolean d, char e_, short f);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.PrimitiveBundleImpl");
+        Locale ptBr = Locale.forLanguageTag("pt-BR");
+        Object bundle = impl.getConstructor(Locale.class).newInstance(ptBr);
+        Object[] arguments = { Integer.MIN_VALUE, 1234567L, 3.14159, true,
+                'ç', (short) -5 };
+        // untyped elements are written as String.valueOf does, number
+        // elements as MessageFormat does.
+        String expected = "-2147483648 1.234.567 3,14 true ç -5";
+
+        assertThat(impl.getMethod("toText", int.class, long.class,
+                double.class, boolean.class, char.class, short.class)
+                .invoke(bundle, arguments)).isEqualTo(expected);
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        impl.getMethod("toBuffer", ByteBuffer.class, int.class, long.class,
+                double.class, boolean.class, char.class, short.class)
+                .invoke(bundle, buffer, arguments[0], arguments[1],
+                        arguments[2], arguments[3], arguments[4],
+                        arguments[5]);
+        assertThat(new String(buffer.array(), 0, buffer.position(),
+                StandardCharsets.UTF_8)).isEqualTo(expected);
+
+        StringWriter writer = new StringWriter();
+        impl.getMethod("toAppendable", Appendable.class, int.class,
+                long.class, double.class, boolean.class, char.class,
+                short.class)
+                .invoke(bundle, writer, arguments[0], arguments[1],
+                        arguments[2], arguments[3], arguments[4],
+                        arguments[5]);
+        assertThat(writer.toString()).isEqualTo(expected);
+    }
+
+    @Test
+    public void ensureGeneratedImplementationUsesReloadedMessages(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.ReloadedBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle \n"
+                                + "public interface ReloadedBundle {\n"
+                                + "    @Message(value = \"worked {0}\")\n"
+                                + "    public String m1(int pZero);\n"
+                                + "\n"
+                                + "    @Message(value = \"worked {0}\")\n"
+                                + "    public void m2(StringBuilder pOut, int pZero);\n"
+                                + "\n"
+                                + "    @Message(value = \"static\")\n"
+                                + "    public String m3();\n" + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.ReloadedBundleImpl");
+        Object bundle = impl.getConstructor(Locale.class)
+                .newInstance(Locale.forLanguageTag("en-US"));
+        Path translations = Files
+                .createDirectory(pDirectory.resolve("translations"));
+        Files.writeString(
+                translations.resolve("ReloadedBundle_en-US.properties"),
+                "m1=reloaded {0}\nm2=reloaded {0,number,integer}\nm3=changed\n");
+
+        ((MessageBundleReloader) impl.getMethod("getReloader").invoke(bundle))
+                .reload(translations);
+
+        assertThat(impl.getMethod("m1", int.class).invoke(bundle, 1000))
+                .isEqualTo("reloaded 1000");
+        StringBuilder builder = new StringBuilder();
+        impl.getMethod("m2", StringBuilder.class, int.class).invoke(bundle,
+                builder, 1000);
+        assertThat(builder.toString()).isEqualTo("reloaded 1,000");
+        assertThat(impl.getMethod("m3").invoke(bundle)).isEqualTo("changed");
+    }
+
+    @Test
+    public void ensureMissingMessagesAreInheritedFromParentLocales(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.ChainedBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle(locales = \"pt-PT\")\n"
+                                + "public interface ChainedBundle {\n"
+                                + "    @Message(value = \"worked {0}\")\n"
+                                + "    @Message(value = \"funcionou {0}\", locale = \"pt\")\n"
+                                + "    public String m1(int pZero);\n"
+                                + "\n"
+                                + "    @Message(value = \"static\")\n"
+                                + "    @Message(value = \"estático\", locale = \"pt\")\n"
+                                + "    @Message(value = \"estático BR\", locale = \"pt-BR\")\n"
+                                + "    public String m2();\n" + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.ChainedBundleImpl");
+        for (String tag : new String[] { "pt-BR", "pt-PT", "pt-AO" }) {
+            Object bundle = impl.getConstructor(Locale.class)
+                    .newInstance(Locale.forLanguageTag(tag));
+            assertThat(impl.getMethod("m1", int.class).invoke(bundle, 1))
+                    .isEqualTo("funcionou 1");
+            assertThat(impl.getMethod("getMessage", String.class)
+                    .invoke(bundle, "m1")).isEqualTo("funcionou {0}");
+            assertThat(impl.getMethod("m2").invoke(bundle)).isEqualTo(
+                    "pt-BR".equals(tag) ? "estático BR" : "estático");
+        }
+        assertThat(impl.getMethod("m1", int.class).invoke(
+                impl.getConstructor(Locale.class).newInstance(Locale.FRANCE),
+                1)).isEqualTo("worked 1");
+
+        // a reloaded parent reaches the children that inherited its messages
+        Object ptBr = impl.getConstructor(Locale.class)
+                .newInstance(Locale.forLanguageTag("pt-BR"));
+        Path translations = Files
+                .createDirectory(pDirectory.resolve("translations"));
+        Files.writeString(translations.resolve("ChainedBundle_pt.properties"),
+                "m1=recarregado {0}\nm2=recarregado\n");
+        ((MessageBundleReloader) impl.getMethod("getReloader").invoke(ptBr))
+                .reload(translations);
+        assertThat(impl.getMethod("m1", int.class).invoke(ptBr, 1))
+                .isEqualTo("recarregado 1");
+        assertThat(impl.getMethod("m2").invoke(ptBr))
+                .isEqualTo("estático BR");
+        assertThat(impl.getMethod("m1", int.class).invoke(
+                impl.getConstructor(Locale.class).newInstance(Locale.FRANCE),
+                1)).isEqualTo("worked 1");
+    }
+
+    @Test
+    public void ensurePluralAndSelectCasesAreCompiledPerLocale(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.PluralBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface PluralBundle {\n"
+                                + "    @Message(value = \"{1,select,female{She} other{They}} found {0,plural,=0{no files} one{# file} other{# files}}\")\n"
+                                + "    @Message(value = \"{1,select,female{Она} other{Они}}: {0,plural,one{# файл} few{# файла} other{# файлов}}\", locale = \"ru\")\n"
+                                + "    public String found(int pCount, String pGender);\n"
+                                + "\n"
+                                + "    @Message(value = \"{0,plural,one{# day} other{# days}}\")\n"
+                                + "    public void days(StringBuilder pOut, long pDays);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.PluralBundleImpl");
+        Object english = impl.getConstructor(Locale.class)
+                .newInstance(Locale.US);
+        Object russian = impl.getConstructor(Locale.class)
+                .newInstance(new Locale("ru", "RU"));
+        Method found = impl.getMethod("found", int.class,
+                String.class);
+
+        assertThat(found.invoke(english, 0, "female"))
+                .isEqualTo("She found no files");
+        assertThat(found.invoke(english, 1, "male"))
+                .isEqualTo("They found 1 file");
+        assertThat(found.invoke(english, 1000, "male"))
+                .isEqualTo("They found 1,000 files");
+        assertThat(found.invoke(russian, 21, "female"))
+                .isEqualTo("Она: 21 файл");
+        assertThat(found.invoke(russian, 3, "male"))
+                .isEqualTo("Они: 3 файла");
+        // the many category is missing, so other is used
+        assertThat(found.invoke(russian, 0, "male"))
+                .isEqualTo("Они: 0 файлов");
+        assertThat(impl.getDeclaredMethod("plural_ru", long.class))
+                .isNotNull();
+
+        StringBuilder days = new StringBuilder();
+        impl.getMethod("days", StringBuilder.class, long.class)
+                .invoke(english, days, -1L);
+        assertThat(days.toString()).isEqualTo("-1 day");
+    }
+
+    @Test
+    public void ensureBatchesAreRenderedPerLocale(@TempDir Path pDirectory)
+            throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.BatchBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface BatchBundle {\n"
+                                + "    @Message(value = \"{0} has {1,plural,one{# message} other{# messages}}\")\n"
+                                + "    @Message(value = \"{0} tem {1,plural,one{# mensagem} other{# mensagens}}\", locale = \"pt-BR\")\n"
+                                + "    public String inbox(String names, int pCount);\n"
+                                + "}"));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.BatchBundleImpl");
+        Locale brazil = Locale.forLanguageTag("pt-BR");
+        MessageBatch batch = MessageBatch.of(Locale.US, brazil, Locale.US,
+                brazil);
+
+        assertThat((String[]) impl
+                .getMethod("inboxBatch", MessageBatch.class, String[].class,
+                        int[].class)
+                .invoke(null, batch, new String[] { "Ann", "Bia", "Cal", "Duda" },
+                        new int[] { 1, 1, 1200, 0 })).containsExactly(
+                                "Ann has 1 message", "Bia tem 1 mensagem",
+                                "Cal has 1,200 messages", "Duda tem 0 mensagem");
+    }
+
+    @Test
+    public void ensurePluralArgumentsMustBeIntegral(
+            @TempDir Path pDirectory) throws Exception {
+        MessageBundleGeneratorAnnotationProcessor processor = new MessageBundleGeneratorAnnotationProcessor();
+        Assertions.assertThrows(ReflectException.class, () -> {
+            Reflect.compile("br.com.c8tech.jlib.i18n.apt.DoublePlural",
+                    "package br.com.c8tech.jlib.i18n.apt;\n"
+                            + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                            + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                            + "@MessageBundle\n"
+                            + "public interface DoublePlural {\n"
+                            + "    @Message(value = \"{0,plural,one{# km} other{# km}}\")\n"
+                            + "    public String distance(double pKm);\n"
+                            + "}",
+                    new CompileOptions().options("-source", "11", "-d",
+                            pDirectory.toString())
+                            .processors(processor))
+                    .type();
+        });
+    }
+
+    @Test
+    public void ensureLocalesArePreloadedOnTheExecutor(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.PreloadedBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface PreloadedBundle {\n"
+                                + "    @Message(value = \"ready\", locale = \"en-US\")\n"
+                                + "    @Message(value = \"pronto\", locale = \"pt-BR\")\n"
+                                + "    public String ready();\n" + "}"),
+                "-ABundle.format=binary");
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.PreloadedBundleImpl");
+        AtomicInteger loads = new AtomicInteger();
+        Executor executor = command -> {
+            loads.incrementAndGet();
+            command.run();
+        };
+        CompletableFuture<?> preloaded = (CompletableFuture<?>) impl
+                .getMethod("preload", Executor.class, Locale[].class)
+                .invoke(null, executor, new Locale[] { Locale.US,
+                        Locale.forLanguageTag("pt-BR") });
+
+        assertThat(preloaded).isCompleted();
+        assertThat(loads).hasValue(2);
+        Object ptBr = impl.getConstructor(Locale.class)
+                .newInstance(Locale.forLanguageTag("pt-BR"));
+        assertThat(impl.getMethod("ready").invoke(ptBr)).isEqualTo("pronto");
+    }
+
+    @Test
+    public void ensureRegistryRecordsTheBundlesOfTheCompilation(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.AccountBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface AccountBundle {\n"
+                                + "    @Message(value = \"welcome\", locale = \"en-US\")\n"
+                                + "    @Message(value = \"bem-vindo\", locale = \"pt-BR\")\n"
+                                + "    public String welcome();\n" + "}",
+                        "br.com.c8tech.jlib.i18n.apt.CartBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface CartBundle {\n"
+                                + "    @Message(value = \"empty\", locale = \"en-US\")\n"
+                                + "    public String empty();\n" + "}"),
+                "-ABundle.registry=br.com.c8tech.jlib.i18n.apt.registry.AppBundles");
+
+        MessageBundleRegistry registry = ServiceLoader
+                .load(MessageBundleRegistry.class, loader).findFirst()
+                .orElseThrow();
+        assertThat(registry.getClass().getName())
+                .isEqualTo("br.com.c8tech.jlib.i18n.apt.registry.AppBundles");
+        assertThat(registry.getBundleNames()).containsExactly(
+                "br.com.c8tech.jlib.i18n.apt.AccountBundle",
+                "br.com.c8tech.jlib.i18n.apt.CartBundle");
+        assertThat(registry
+                .getLanguageTags("br.com.c8tech.jlib.i18n.apt.AccountBundle"))
+                        .containsExactly("en-US", "pt-BR");
+        assertThat(registry.getLanguageTags("unknown")).isEmpty();
+
+        AtomicInteger loads = new AtomicInteger();
+        Executor executor = command -> {
+            loads.incrementAndGet();
+            command.run();
+        };
+        assertThat(registry.preload(executor, Locale.US,
+                Locale.forLanguageTag("pt-BR"))).isCompleted();
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    public void ensureNativeImageMetadataIsGeneratedPerBundle(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.NativeBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface NativeBundle {\n"
+                                + "    @Message(value = \"native\", locale = \"en-US\")\n"
+                                + "    @Message(value = \"nativo\", locale = \"pt-BR\")\n"
+                                + "    public String m1();\n" + "}"));
+
+        String directory = "META-INF/native-image/br.com.c8tech.jlib.i18n/br.com.c8tech.jlib.i18n.apt.NativeBundleImpl/";
+        String properties = new String(loader
+                .getResourceAsStream(directory + "native-image.properties")
+                .readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(properties).isEqualTo(
+                "Args = --initialize-at-build-time=br.com.c8tech.jlib.i18n.apt.NativeBundleImpl$Messages_en_US,"
+                        + "br.com.c8tech.jlib.i18n.apt.NativeBundleImpl$Messages_pt_BR\n");
+        // the holders named by the configuration must exist
+        for (String holder : properties.substring(properties.lastIndexOf('=') + 1)
+                .trim().split(",")) {
+            assertThat(loader.loadClass(holder)).isNotNull();
+        }
+        assertThat(new String(loader
+                .getResourceAsStream(directory + "reflect-config.json")
+                .readAllBytes(), StandardCharsets.UTF_8)).contains(
+                        "\"name\": \"br.com.c8tech.jlib.i18n.apt.NativeBundleImpl\"");
+        assertThat(loader.getResource(directory + "resource-config.json"))
+                .isNull();
+    }
+
+    @Test
+    public void ensureInvalidBundlesDoNotStopTheOthers(
+            @TempDir Path pDirectory) throws Exception {
+        List<String> errors = ProcessorTestCompiler.compileWithErrors(
+                pDirectory, new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.BadBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface BadBundle {\n"
+                                + "    @Message(value = \"bad {0\")\n"
+                                + "    public String m1(int pZero);\n" + "}",
+                        "br.com.c8tech.jlib.i18n.apt.GoodBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface GoodBundle {\n"
+                                + "    @Message(value = \"good {0}\")\n"
+                                + "    public String m1(int pZero);\n" + "}"));
+
+        assertThat(errors).anyMatch(
+                e -> e.startsWith("The message is not a valid template"));
+        assertThat(errors).noneMatch(e -> e.contains("uncaught exception"));
+        assertThat(pDirectory
+                .resolve("src/br/com/c8tech/jlib/i18n/apt/GoodBundleImpl.java"))
+                        .exists();
+        assertThat(pDirectory
+                .resolve("src/br/com/c8tech/jlib/i18n/apt/BadBundleImpl.java"))
+                        .doesNotExist();
+    }
+
+    @Test
+    public void ensureEveryInvalidMethodIsReported(@TempDir Path pDirectory)
+            throws Exception {
+        List<String> errors = ProcessorTestCompiler.compileWithErrors(
+                pDirectory, new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.InvalidBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface InvalidBundle {\n"
+                                + "    @Message(value = \"bad {0\")\n"
+                                + "    public String m1(int pZero);\n"
+                                + "\n"
+                                + "    @Message(value = \"two sinks\")\n"
+                                + "    public void m2(StringBuilder pOne, Appendable pTwo);\n"
+                                + "\n"
+                                + "    @Message(value = \"valid {0}\")\n"
+                                + "    public String m3(int pZero);\n" + "}"));
+
+        assertThat(errors).anyMatch(
+                e -> e.startsWith("The message is not a valid template"));
+        assertThat(errors).anyMatch(
+                e -> e.endsWith("can write into a single sink parameter."));
+        assertThat(errors).anyMatch(
+                e -> e.startsWith("The InvalidBundle was not generated"));
+        assertThat(errors).noneMatch(e -> e.contains("uncaught exception"));
+    }
+
+    @Test
+    public void ensureLargeBundlesAreGenerated(@TempDir Path pDirectory)
+            throws Exception {
+        // enough messages to exceed the 64KB of code of a class initializer
+        // setting every element of the tables at once.
+        StringBuilder source = new StringBuilder(
+                "package br.com.c8tech.jlib.i18n.apt;\n"
+                        + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                        + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                        + "@MessageBundle\n"
+                        + "public interface LargeBundle {\n");
+        for (int i = 0; i < 9000; i++) {
+            source.append("    @Message(value = \"message ").append(i)
+                    .append("\")\n    @Message(value = \"mensagem ")
+                    .append(i).append("\", locale = \"pt-BR\")\n")
+                    .append("    public String m").append(i).append("();\n");
+        }
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.LargeBundle",
+                        source.append("}").toString()));
+
+        Class<?> impl = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.LargeBundleImpl");
+        Object bundle = impl.getConstructor(Locale.class)
+                .newInstance(Locale.US);
+        assertThat(impl.getMethod("m8999").invoke(bundle))
+                .isEqualTo("message 8999");
+        Object ptBr = impl.getConstructor(Locale.class)
+                .newInstance(Locale.forLanguageTag("pt-BR"));
+        assertThat(impl.getMethod("m0").invoke(ptBr)).isEqualTo("mensagem 0");
+        assertThat(impl.getMethod("m4500").invoke(ptBr))
+                .isEqualTo("mensagem 4500");
+    }
+
+    @Test
+    public void ensureTemplatesSharedByBundlesAreTheSameString(
+            @TempDir Path pDirectory) throws Exception {
+        ClassLoader loader = ProcessorTestCompiler.compile(pDirectory,
+                new MessageBundleGeneratorAnnotationProcessor(),
+                Map.of("br.com.c8tech.jlib.i18n.apt.FirstBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface FirstBundle {\n"
+                                + "    @Message(value = \"saved {0}\")\n"
+                                + "    @Message(value = \"saved {0}\", locale = \"en-GB\")\n"
+                                + "    public String saved(String pName);\n"
+                                + "}",
+                        "br.com.c8tech.jlib.i18n.apt.SecondBundle",
+                        "package br.com.c8tech.jlib.i18n.apt;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.MessageBundle;\n"
+                                + "import br.com.c8tech.jlib.i18n.annotations.Message;\n"
+                                + "@MessageBundle\n"
+                                + "public interface SecondBundle {\n"
+                                + "    @Message(value = \"saved {0}\")\n"
+                                + "    public String stored(String pName);\n"
+                                + "\n"
+                                + "    @Message(value = \"only here\")\n"
+                                + "    public String unique();\n" + "}"));
+
+        Class<?> first = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.FirstBundleImpl");
+        Object firstBundle = first.getConstructor(Locale.class)
+                .newInstance(Locale.UK);
+        assertThat(first.getMethod("saved", String.class).invoke(firstBundle,
+                "a")).isEqualTo("saved a");
+        Class<?> second = loader
+                .loadClass("br.com.c8tech.jlib.i18n.apt.SecondBundleImpl");
+        Object secondBundle = second.getConstructor(Locale.class)
+                .newInstance(Locale.US);
+        assertThat(second.getMethod("stored", String.class)
+                .invoke(secondBundle, "b")).isEqualTo("saved b");
+        assertThat(second.getMethod("unique").invoke(secondBundle))
+                .isEqualTo("only here");
+        // the literals of the tables are interned, so a template repeated
+        // across locales and bundles is kept once
+        assertThat(first.getMethod("getMessage", String.class)
+                .invoke(firstBundle, "saved"))
+                        .isSameAs(second.getMethod("getMessage", String.class)
+                                .invoke(secondBundle, "stored"));
+    }
+
+    @Test
+    public void ensureProcessorIsRegisteredAsDynamic() throws Exception {
+        try (InputStream input = MessageBundleGeneratorAnnotationProcessor.class
+                .getResourceAsStream(
+                        "/META-INF/gradle/incremental.annotation.processors")) {
+            assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)
+                    .trim()).isEqualTo(
+                            MessageBundleGeneratorAnnotationProcessor.class
+                                    .getName() + ",dynamic");
+        }
+    }
 }
@@ -0,0 +1,108 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.apt;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles sources into a directory running the given processor, so the
+ * generated classes and resources can be loaded by the tests. Unlike jOOR,
+ * this also compiles the sources generated by the processor.
+ */
+final class ProcessorTestCompiler {
+
+    private ProcessorTestCompiler() {
+    }
+
+    static ClassLoader compile(Path pDirectory, Processor pProcessor,
+            Map<String, String> pSources, String... pOptions)
+            throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        if (!run(pDirectory, pProcessor, pSources, diagnostics, pOptions)) {
+            fail(diagnostics.getDiagnostics().stream().map(Object::toString)
+                    .collect(Collectors.joining("\n")));
+        }
+        return new URLClassLoader(
+                new URL[] { pDirectory.resolve("classes").toUri().toURL() },
+                ProcessorTestCompiler.class.getClassLoader());
+    }
+
+    /**
+     * Compiles sources expected to fail. The sources generated before the
+     * failure are left in the {@code src} directory.
+     *
+     * @return the errors reported.
+     */
+    static List<String> compileWithErrors(Path pDirectory,
+            Processor pProcessor, Map<String, String> pSources,
+            String... pOptions) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        if (run(pDirectory, pProcessor, pSources, diagnostics, pOptions)) {
+            fail("The compilation should have failed");
+        }
+        return diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                .map(d -> d.getMessage(Locale.ROOT))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean run(Path pDirectory, Processor pProcessor,
+            Map<String, String> pSources,
+            DiagnosticCollector<JavaFileObject> pDiagnostics,
+            String... pOptions) throws IOException {
+        Path sourceDir = Files.createDirectories(pDirectory.resolve("src"));
+        Path outputDir = Files.createDirectories(pDirectory.resolve("classes"));
+        List<Path> files = new ArrayList<>();
+        for (Map.Entry<String, String> source : pSources.entrySet()) {
+            Path file = sourceDir
+                    .resolve(source.getKey().replace('.', '/') + ".java");
+            Files.createDirectories(file.getParent());
+            files.add(Files.writeString(file, source.getValue()));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler
+                .getStandardFileManager(pDiagnostics, null, null)) {
+            List<String> options = new ArrayList<>(List.of("-encoding",
+                    "UTF-8", "-d", outputDir.toString(), "-s",
+                    sourceDir.toString(), "-classpath",
+                    System.getProperty("surefire.test.class.path",
+                            System.getProperty("java.class.path"))));
+            options.addAll(Arrays.asList(pOptions));
+            JavaCompiler.CompilationTask task = compiler.getTask(null,
+                    fileManager, pDiagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromPaths(files));
+            task.setProcessors(List.of(pProcessor));
+            return task.call();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.benchmarks;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Hands out the locales declared by {@link BenchmarkMessages} in round robin,
+ * so each thread spreads its calls over the chosen number of locales.
+ */
+@State(Scope.Thread)
+public class BenchmarkLocales {
+
+    static final Locale[] LOCALES = Arrays
+            .stream(new String[] { "en-US", "pt-BR", "es-ES", "fr-FR", "de-DE",
+                    "it-IT", "nl-NL", "sv-SE" })
+            .map(Locale::forLanguageTag).toArray(Locale[]::new);
+
+    private int next;
+
+    Locale next(int pLocaleCount) {
+        Locale locale = LOCALES[next];
+        next = next + 1 < pLocaleCount ? next + 1 : 0;
+        return locale;
+    }
+}
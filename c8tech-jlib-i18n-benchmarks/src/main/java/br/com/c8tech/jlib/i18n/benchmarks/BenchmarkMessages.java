@@ -0,0 +1,55 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.benchmarks;
+
+import br.com.c8tech.jlib.i18n.annotations.Message;
+import br.com.c8tech.jlib.i18n.annotations.MessageBundle;
+
+/**
+ * The message bundle exercised by the benchmarks. The same messages are kept
+ * in the {@code Messages*.properties} files used by the
+ * {@link java.util.ResourceBundle} baseline.
+ */
+@MessageBundle(locales = { "pt-BR", "es-ES", "fr-FR", "de-DE", "it-IT",
+        "nl-NL", "sv-SE" })
+public interface BenchmarkMessages {
+
+    @Message(value = "Operation completed.", locale = "en-US")
+    @Message(value = "Operação concluída.", locale = "pt-BR")
+    @Message(value = "Operación completada.", locale = "es-ES")
+    @Message(value = "Opération terminée.", locale = "fr-FR")
+    @Message(value = "Vorgang abgeschlossen.", locale = "de-DE")
+    @Message(value = "Operazione completata.", locale = "it-IT")
+    @Message(value = "Bewerking voltooid.", locale = "nl-NL")
+    @Message(value = "Åtgärden slutförd.", locale = "sv-SE")
+    String noArguments();
+
+    @Message(value = "User {0} was not found.", locale = "en-US")
+    @Message(value = "Usuário {0} não foi encontrado.", locale = "pt-BR")
+    @Message(value = "No se encontró el usuario {0}.", locale = "es-ES")
+    @Message(value = "Utilisateur {0} introuvable.", locale = "fr-FR")
+    @Message(value = "Benutzer {0} wurde nicht gefunden.", locale = "de-DE")
+    @Message(value = "Utente {0} non trovato.", locale = "it-IT")
+    @Message(value = "Gebruiker {0} is niet gevonden.", locale = "nl-NL")
+    @Message(value = "Användaren {0} hittades inte.", locale = "sv-SE")
+    String oneArgument(String pUser);
+
+    @Message(value = "Order {0} for {1} was shipped to {2}.", locale = "en-US")
+    @Message(value = "Pedido {0} de {1} foi enviado para {2}.", locale = "pt-BR")
+    @Message(value = "El pedido {0} de {1} fue enviado a {2}.", locale = "es-ES")
+    @Message(value = "La commande {0} de {1} a été expédiée à {2}.", locale = "fr-FR")
+    @Message(value = "Bestellung {0} von {1} wurde nach {2} versandt.", locale = "de-DE")
+    @Message(value = "Ordine {0} di {1} spedito a {2}.", locale = "it-IT")
+    @Message(value = "Bestelling {0} van {1} is verzonden naar {2}.", locale = "nl-NL")
+    @Message(value = "Order {0} för {1} skickades till {2}.", locale = "sv-SE")
+    String threeArguments(String pOrder, String pCustomer, String pCity);
+}
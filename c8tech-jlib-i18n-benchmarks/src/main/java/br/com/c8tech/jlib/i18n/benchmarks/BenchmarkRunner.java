@@ -0,0 +1,43 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so the allocation rate of each
+ * benchmark is reported. Unless a thread count is given with {@code -t}, every
+ * benchmark runs with one thread and with one thread per available
+ * processor. Any other JMH command line option is honored.
+ */
+public final class BenchmarkRunner {
+
+    public static void main(String[] pArgs) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(pArgs);
+        int[] threadCounts = commandLine.getThreads().hasValue()
+                ? new int[] { commandLine.getThreads().get() }
+                : new int[] { 1, Runtime.getRuntime().availableProcessors() };
+
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder().parent(commandLine)
+                    .threads(threads).addProfiler(GCProfiler.class).build();
+            new Runner(options).run();
+        }
+    }
+
+    private BenchmarkRunner() {
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.benchmarks;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the first message of a fresh JVM, including class loading and the
+ * population of the locale caches.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdLookupBenchmark {
+
+    private static final Locale LOCALE = Locale.forLanguageTag("pt-BR");
+
+    @Benchmark
+    public String generated() {
+        return new BenchmarkMessagesImpl(LOCALE).threeArguments("1234", "john",
+                "Lisbon");
+    }
+
+    @Benchmark
+    public String resourceBundle() {
+        ResourceBundle bundle = ResourceBundle
+                .getBundle(MessageFormattingBenchmark.BASE_NAME, LOCALE);
+        return new MessageFormat(bundle.getString("threeArguments"), LOCALE)
+                .format(new Object[] { "1234", "john", "Lisbon" });
+    }
+}
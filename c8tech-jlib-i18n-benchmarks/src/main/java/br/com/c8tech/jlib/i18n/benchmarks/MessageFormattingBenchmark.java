@@ -0,0 +1,82 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n.benchmarks;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the generated implementation against the usual
+ * {@link ResourceBundle#getString(String)} plus
+ * {@link MessageFormat#format(String, Object...)} idiom with warm caches.
+ * Both sides resolve the locale on every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageFormattingBenchmark {
+
+    static final String BASE_NAME = "br.com.c8tech.jlib.i18n.benchmarks.Messages";
+
+    @Param({ "0", "1", "3" })
+    int arguments;
+
+    @Param({ "1", "8" })
+    int locales;
+
+    @Benchmark
+    public String generated(BenchmarkLocales pLocales) {
+        BenchmarkMessages messages = new BenchmarkMessagesImpl(
+                pLocales.next(locales));
+        switch (arguments) {
+        case 0:
+            return messages.noArguments();
+        case 1:
+            return messages.oneArgument("john");
+        default:
+            return messages.threeArguments("1234", "john", "Lisbon");
+        }
+    }
+
+    @Benchmark
+    public String resourceBundle(BenchmarkLocales pLocales) {
+        Locale locale = pLocales.next(locales);
+        ResourceBundle bundle = ResourceBundle.getBundle(BASE_NAME, locale);
+        switch (arguments) {
+        case 0:
+            return new MessageFormat(bundle.getString("noArguments"), locale)
+                    .format(new Object[0]);
+        case 1:
+            return new MessageFormat(bundle.getString("oneArgument"), locale)
+                    .format(new Object[] { "john" });
+        default:
+            return new MessageFormat(bundle.getString("threeArguments"),
+                    locale).format(new Object[] { "1234", "john", "Lisbon" });
+        }
+    }
+}
@@ -2,10 +2,25 @@ package br.com.c8tech.jlib.i18n;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.MissingResourceException;
 import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 public abstract class AbstractMessageBundle {
 
+    /**
+     * @deprecated the generated implementations embed their tables or read
+     *             them from a {@link CompactBundle}. Loading a
+     *             {@link PropertyResourceBundle} from a stream reads it while
+     *             holding a monitor, which pins the carrier of a virtual
+     *             thread.
+     */
+    @Deprecated
     protected class ConcreteResourceBundle extends PropertyResourceBundle {
 
         public ConcreteResourceBundle(InputStream pStream) throws IOException {
@@ -13,4 +28,281 @@ public abstract class AbstractMessageBundle {
         }
 
     }
+
+    private static final ResourceBundle.Control CANDIDATES = ResourceBundle.Control
+            .getNoFallbackControl(ResourceBundle.Control.FORMAT_DEFAULT);
+
+    /**
+     * Loads the tables of the given locales on the executor, one task per
+     * locale, so the first messages requested in those locales find them
+     * cached. Loading holds no lock, so it may run on virtual threads.
+     *
+     * @param pTables
+     *                      the function returning the table of a locale from
+     *                      the cache of the generated implementation.
+     * @param pExecutor
+     *                      the executor running the loads.
+     * @param pLocales
+     *                      the locales to load.
+     * @return a future completed once every table is cached, or
+     *         exceptionally if a table can't be loaded.
+     */
+    protected static CompletableFuture<Void> preload(
+            Function<Locale, MessageTable> pTables, Executor pExecutor,
+            Locale... pLocales) {
+        CompletableFuture<?>[] loads = new CompletableFuture<?>[pLocales.length];
+        for (int i = 0; i < pLocales.length; i++) {
+            Locale locale = pLocales[i];
+            loads[i] = CompletableFuture
+                    .runAsync(() -> pTables.apply(locale), pExecutor);
+        }
+        return CompletableFuture.allOf(loads);
+    }
+
+    private static int indexOfLanguageTag(Locale pLocale,
+            String[] pLanguageTags) {
+        String tag = pLocale.toLanguageTag();
+        for (int i = 0; i < pLanguageTags.length; i++) {
+            if (pLanguageTags[i].equalsIgnoreCase(tag)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of the language tag that best matches the given
+     * locale. An exact match is preferred, then the nearest parent locale, as
+     * listed by the candidate locales of {@link ResourceBundle.Control}, then
+     * a match on the language only. When nothing matches, the first tag (the
+     * bundle default) is chosen.
+     * <p>
+     * The tables of the generated implementations already hold the messages
+     * inherited from parent locales, so the selected locale is never walked
+     * up again.
+     *
+     * @param pLocale
+     *                          the requested locale.
+     * @param pLanguageTags
+     *                          the locales supported by a message bundle, the
+     *                          default one first.
+     * @return the index of the selected language tag.
+     */
+    protected static int resolveLocaleIndex(Locale pLocale,
+            String... pLanguageTags) {
+        return resolveLocaleIndex(pLocale, MessageBundleMetrics.DISABLED,
+                pLanguageTags);
+    }
+
+    /**
+     * Returns the position of the language tag that best matches the given
+     * locale, like {@link #resolveLocaleIndex(Locale, String...)}, recording
+     * a fallback when nothing matches.
+     *
+     * @param pLocale
+     *                          the requested locale.
+     * @param pMetrics
+     *                          the metrics of the message bundle.
+     * @param pLanguageTags
+     *                          the locales supported by a message bundle, the
+     *                          default one first.
+     * @return the index of the selected language tag.
+     */
+    protected static int resolveLocaleIndex(Locale pLocale,
+            MessageBundleMetrics pMetrics, String... pLanguageTags) {
+        int index = indexOfLanguageTag(pLocale, pLanguageTags);
+        if (index >= 0) {
+            return index;
+        }
+        for (Locale candidate : CANDIDATES.getCandidateLocales("", pLocale)) {
+            index = indexOfLanguageTag(candidate, pLanguageTags);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        String language = pLocale.getLanguage();
+        for (int i = 0; i < pLanguageTags.length; i++) {
+            if (Locale.forLanguageTag(pLanguageTags[i]).getLanguage()
+                    .equals(language)) {
+                return i;
+            }
+        }
+        pMetrics.recordFallback(pLocale);
+        return 0;
+    }
+
+    private final Locale locale;
+
+    /**
+     * The position of the selected locale within the language tags informed
+     * by the generated implementation.
+     */
+    protected final int localeIndex;
+
+    private final MessageBundleMetrics metrics;
+
+    private final MessageBundleReloader reloader;
+
+    private final MessageTable table;
+
+    /**
+     * @param pLocale
+     *                    the requested locale.
+     * @param pTable
+     *                    the messages resolved for the locale, usually taken
+     *                    from the {@link LocaleCache} of the generated
+     *                    implementation.
+     */
+    protected AbstractMessageBundle(Locale pLocale, MessageTable pTable) {
+        this(pLocale, pTable, null);
+    }
+
+    /**
+     * @param pLocale
+     *                      the requested locale.
+     * @param pTable
+     *                      the messages resolved for the locale, usually
+     *                      taken from the {@link LocaleCache} of the
+     *                      generated implementation.
+     * @param pReloader
+     *                      the reloader shared by the instances of the
+     *                      generated implementation or null if its messages
+     *                      can't be reloaded.
+     */
+    protected AbstractMessageBundle(Locale pLocale, MessageTable pTable,
+            MessageBundleReloader pReloader) {
+        this(pLocale, pTable, pReloader, MessageBundleMetrics.DISABLED);
+    }
+
+    /**
+     * @param pLocale
+     *                      the requested locale.
+     * @param pTable
+     *                      the messages resolved for the locale, usually
+     *                      taken from the {@link LocaleCache} of the
+     *                      generated implementation.
+     * @param pReloader
+     *                      the reloader shared by the instances of the
+     *                      generated implementation or null if its messages
+     *                      can't be reloaded.
+     * @param pMetrics
+     *                      the metrics shared by the instances of the
+     *                      generated implementation.
+     */
+    protected AbstractMessageBundle(Locale pLocale, MessageTable pTable,
+            MessageBundleReloader pReloader, MessageBundleMetrics pMetrics) {
+        locale = pLocale;
+        table = pTable;
+        localeIndex = pTable.getLocaleIndex();
+        reloader = pReloader;
+        metrics = pMetrics;
+    }
+
+    /**
+     * Records a formatted message. The generated methods call it after
+     * formatting, with the value returned by {@link #startFormatting()}.
+     *
+     * @param pStarted
+     *                     the value returned by {@link #startFormatting()}.
+     */
+    protected final void endFormatting(long pStarted) {
+        metrics.recordFormatting(localeIndex, pStarted);
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Returns the message stored at the given index: the rendered message if
+     * it has no arguments, its template otherwise.
+     *
+     * @param pIndex
+     *                   the index assigned to the message key.
+     * @return the message of the selected locale.
+     */
+    public final String getMessage(int pIndex) {
+        metrics.recordLookup(localeIndex);
+        String reloaded = reloader == null ? null
+                : reloader.getMessage(localeIndex, pIndex);
+        return reloaded != null ? reloaded : table.get(pIndex);
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the message returned by
+     * {@link #getMessage(int)}, so static messages are encoded rendered. The
+     * encoding is computed once per locale.
+     *
+     * @param pIndex
+     *                   the index assigned to the message key.
+     * @return a read only buffer holding the encoded message.
+     */
+    public final ByteBuffer getMessageUtf8(int pIndex) {
+        metrics.recordLookup(localeIndex);
+        ByteBuffer reloaded = reloader == null ? null
+                : reloader.getUtf8(localeIndex, pIndex);
+        return reloaded != null ? reloaded : table.getUtf8(pIndex);
+    }
+
+    /**
+     * @return the reloader of the messages of this bundle or null if they
+     *         can't be reloaded.
+     */
+    public final MessageBundleReloader getReloader() {
+        return reloader;
+    }
+
+    /**
+     * Returns the template reloaded for the message stored at the given index.
+     * The generated methods format it instead of their compiled template when
+     * present.
+     *
+     * @param pIndex
+     *                   the index assigned to the message key.
+     * @return the reloaded template or null if the compiled one is in use.
+     */
+    protected final MessageTemplate getReloadedTemplate(int pIndex) {
+        return reloader == null ? null
+                : reloader.getTemplate(localeIndex, pIndex);
+    }
+
+    /**
+     * Returns the message stored for the given key, like
+     * {@link #getMessage(int)}.
+     *
+     * @param pKey
+     *                 the message key.
+     * @return the message of the selected locale.
+     * @throws MissingResourceException
+     *                                      if the key is unknown.
+     */
+    public String getMessage(String pKey) {
+        int index = indexOf(pKey);
+        if (index < 0) {
+            metrics.recordMissingKey(pKey);
+            throw new MissingResourceException(
+                    "Can't find message for key " + pKey,
+                    getClass().getName(), pKey);
+        }
+        return getMessage(index);
+    }
+
+    /**
+     * Called by the generated methods before formatting a message.
+     *
+     * @return the value to be passed to {@link #endFormatting(long)}.
+     */
+    protected final long startFormatting() {
+        return metrics.startFormatting();
+    }
+
+    /**
+     * @param pKey
+     *                 the message key.
+     * @return the index assigned to the key or a negative value if it is
+     *         unknown.
+     */
+    public int indexOf(String pKey) {
+        return table.indexOf(pKey);
+    }
 }
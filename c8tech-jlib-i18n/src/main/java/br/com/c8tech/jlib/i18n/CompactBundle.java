@@ -0,0 +1,270 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.MissingResourceException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Reads the compact binary form of a message bundle written by
+ * {@link CompactBundleWriter}. The resource is memory-mapped when it is a
+ * plain file and read in bulk otherwise. Nothing is parsed up front: strings
+ * are decoded straight from the buffer when they are requested.
+ * <p>
+ * The layout, all integers being big-endian, is:
+ *
+ * <pre>
+ * int    magic number (C8MB)
+ * short  format version
+ * short  reserved
+ * int    key count
+ * int    locale count
+ * int    string count
+ * int[]  string offsets, string count + 1 entries, relative to the pool
+ * byte[] string pool, the UTF-8 bytes of every distinct string
+ * int[]  key string ids, key count entries
+ * locale count sections of:
+ *   int   language tag string id
+ *   int[] message string ids, key count entries
+ * </pre>
+ */
+public final class CompactBundle {
+
+    public static final String EXTENSION = ".cmb";
+
+    static final int MAGIC = 0x43384D42;
+
+    static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 20;
+
+    /**
+     * Loads a compact bundle from the class path.
+     *
+     * @param pClassLoader
+     *                          the class loader used to find the resource.
+     * @param pResourceName
+     *                          the name of the resource.
+     * @return the loaded bundle.
+     * @throws MissingResourceException
+     *                                      if the resource can't be found.
+     * @throws UncheckedIOException
+     *                                      if the resource can't be read.
+     */
+    public static CompactBundle load(ClassLoader pClassLoader,
+            String pResourceName) {
+        URL url = pClassLoader.getResource(pResourceName);
+        if (url == null) {
+            throw new MissingResourceException(
+                    "Can't find compact bundle " + pResourceName,
+                    CompactBundle.class.getName(), pResourceName);
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(
+                        Path.of(url.toURI()), StandardOpenOption.READ)) {
+                    return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            channel.size()));
+                }
+            }
+            try (InputStream input = url.openStream()) {
+                return wrap(ByteBuffer.wrap(input.readAllBytes()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(
+                    "Failure while reading compact bundle " + pResourceName, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Returns a supplier loading the compact bundle from the class path on its
+     * first call, like {@link #load(ClassLoader, String)}. The bundle is read
+     * without holding any lock, not even the class initialization lock of a
+     * holder class, so a virtual thread loading it never pins its carrier.
+     * Concurrent first calls may read the resource more than once, but all of
+     * them get the bundle published first.
+     *
+     * @param pClassLoader
+     *                          the class loader used to find the resource.
+     * @param pResourceName
+     *                          the name of the resource.
+     * @return the supplier of the bundle.
+     */
+    public static Supplier<CompactBundle> lazy(ClassLoader pClassLoader,
+            String pResourceName) {
+        AtomicReference<CompactBundle> bundle = new AtomicReference<>();
+        return () -> {
+            CompactBundle loaded = bundle.get();
+            if (loaded == null) {
+                bundle.compareAndSet(null, load(pClassLoader, pResourceName));
+                loaded = bundle.get();
+            }
+            return loaded;
+        };
+    }
+
+    /**
+     * @param pBuffer
+     *                    a buffer holding a compact bundle from its position
+     *                    on.
+     * @return a bundle reading the buffer.
+     * @throws IllegalArgumentException
+     *                                      if the buffer doesn't hold a
+     *                                      compact bundle.
+     */
+    public static CompactBundle wrap(ByteBuffer pBuffer) {
+        return new CompactBundle(pBuffer.slice());
+    }
+
+    private final ByteBuffer buffer;
+
+    private final int keyCount;
+
+    private final int keysOffset;
+
+    private final int localeCount;
+
+    private final int poolOffset;
+
+    private CompactBundle(ByteBuffer pBuffer) {
+        buffer = pBuffer;
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getShort(4) != VERSION) {
+            throw new IllegalArgumentException(
+                    "The buffer doesn't hold a compact bundle of version "
+                            + VERSION + ".");
+        }
+        keyCount = buffer.getInt(8);
+        localeCount = buffer.getInt(12);
+        int stringCount = buffer.getInt(16);
+        poolOffset = HEADER_SIZE + (stringCount + 1) * Integer.BYTES;
+        keysOffset = poolOffset + buffer.getInt(HEADER_SIZE
+                + stringCount * Integer.BYTES);
+    }
+
+    public String getKey(int pIndex) {
+        return string(buffer.getInt(keysOffset + pIndex * Integer.BYTES));
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public String getLanguageTag(int pLocaleIndex) {
+        return string(buffer.getInt(sectionOffset(pLocaleIndex)));
+    }
+
+    public int getLocaleCount() {
+        return localeCount;
+    }
+
+    /**
+     * Decodes one message template.
+     *
+     * @param pLocaleIndex
+     *                         the position of the locale section.
+     * @param pIndex
+     *                         the index assigned to the message key.
+     * @return the message template.
+     */
+    public String getMessage(int pLocaleIndex, int pIndex) {
+        return string(buffer.getInt(sectionOffset(pLocaleIndex)
+                + (pIndex + 1) * Integer.BYTES));
+    }
+
+    /**
+     * Returns the UTF-8 bytes of one message, rendered if it is static. The
+     * buffer is a read only view over the bundle, so nothing is copied.
+     *
+     * @param pLocaleIndex
+     *                         the position of the locale section.
+     * @param pIndex
+     *                         the index assigned to the message key.
+     * @return the encoded message template.
+     */
+    public ByteBuffer getMessageUtf8(int pLocaleIndex, int pIndex) {
+        int id = buffer.getInt(
+                sectionOffset(pLocaleIndex) + (pIndex + 1) * Integer.BYTES);
+        int start = buffer.getInt(HEADER_SIZE + id * Integer.BYTES);
+        int end = buffer.getInt(HEADER_SIZE + (id + 1) * Integer.BYTES);
+        return buffer.duplicate().position(poolOffset + start)
+                .limit(poolOffset + end).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the message keys, in the order of their indexes.
+     */
+    public String[] getKeys() {
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = getKey(i);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the table of one locale section. Its messages are decoded when
+     * they are first requested.
+     *
+     * @param pLocaleIndex
+     *                         the position of the locale section.
+     * @param pKeys
+     *                         the message keys, as given by
+     *                         {@link #getKeys()}.
+     * @return a table with the messages of the locale.
+     */
+    public MessageTable getTable(int pLocaleIndex, String[] pKeys) {
+        sectionOffset(pLocaleIndex);
+        return new MessageTable(pLocaleIndex, pKeys,
+                i -> getMessage(pLocaleIndex, i),
+                i -> getMessageUtf8(pLocaleIndex, i));
+    }
+
+    private int sectionOffset(int pLocaleIndex) {
+        if (pLocaleIndex < 0 || pLocaleIndex >= localeCount) {
+            throw new IndexOutOfBoundsException(pLocaleIndex);
+        }
+        return keysOffset + (keyCount + pLocaleIndex * (keyCount + 1))
+                * Integer.BYTES;
+    }
+
+    /**
+     * Decodes a string of the pool. It is interned, so the templates repeated
+     * across locales and bundles share one instance once their tables are
+     * loaded, as the literals of the embedded tables do.
+     */
+    private String string(int pId) {
+        int start = buffer.getInt(HEADER_SIZE + pId * Integer.BYTES);
+        int end = buffer.getInt(HEADER_SIZE + (pId + 1) * Integer.BYTES);
+        if (buffer.hasArray()) {
+            return new String(buffer.array(),
+                    buffer.arrayOffset() + poolOffset + start, end - start,
+                    StandardCharsets.UTF_8).intern();
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.duplicate().position(poolOffset + start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8).intern();
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the compact binary form of a message bundle read by
+ * {@link CompactBundle}. Identical strings are stored only once in the string
+ * pool, whatever key or locale they belong to.
+ */
+public final class CompactBundleWriter {
+
+    private final int[] keyIds;
+
+    private final List<int[]> sections = new ArrayList<>();
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * @param pKeys
+     *                  the message keys, in the order of their indexes.
+     */
+    public CompactBundleWriter(List<String> pKeys) {
+        keyIds = pKeys.stream().mapToInt(this::intern).toArray();
+    }
+
+    /**
+     * Adds the section of a locale. Sections must be added following the order
+     * of the language tags of the message bundle.
+     *
+     * @param pLanguageTag
+     *                         the language tag of the locale.
+     * @param pMessages
+     *                         the message templates, following the order of
+     *                         the keys.
+     * @return this writer.
+     */
+    public CompactBundleWriter addLocale(String pLanguageTag,
+            List<String> pMessages) {
+        if (pMessages.size() != keyIds.length) {
+            throw new IllegalArgumentException("Expected " + keyIds.length
+                    + " messages for locale " + pLanguageTag + " but got "
+                    + pMessages.size() + ".");
+        }
+        int[] section = new int[keyIds.length + 1];
+        section[0] = intern(pLanguageTag);
+        for (int i = 0; i < keyIds.length; i++) {
+            section[i + 1] = intern(pMessages.get(i));
+        }
+        sections.add(section);
+        return this;
+    }
+
+    private int intern(String pString) {
+        return stringIds.computeIfAbsent(pString, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    public void write(OutputStream pOutput) throws IOException {
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        int[] offsets = new int[strings.size() + 1];
+        for (int i = 0; i < strings.size(); i++) {
+            pool.write(strings.get(i).getBytes(StandardCharsets.UTF_8));
+            offsets[i + 1] = pool.size();
+        }
+
+        DataOutputStream output = new DataOutputStream(pOutput);
+        output.writeInt(CompactBundle.MAGIC);
+        output.writeShort(CompactBundle.VERSION);
+        output.writeShort(0);
+        output.writeInt(keyIds.length);
+        output.writeInt(sections.size());
+        output.writeInt(strings.size());
+        for (int offset : offsets) {
+            output.writeInt(offset);
+        }
+        pool.writeTo(output);
+        for (int keyId : keyIds) {
+            output.writeInt(keyId);
+        }
+        for (int[] section : sections) {
+            for (int id : section) {
+                output.writeInt(id);
+            }
+        }
+        output.flush();
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the decimal digits of integral arguments straight into sinks, so the
+ * generated methods neither box them nor convert them to a string first. The
+ * output is the same as {@link Long#toString(long)}.
+ */
+public final class Digits {
+
+    /**
+     * Writes the digits of the value into the appendable.
+     *
+     * @param pValue
+     *                   the value to write.
+     * @param pOut
+     *                   the target appendable.
+     * @throws IOException
+     *                         if the appendable fails.
+     */
+    public static void append(long pValue, Appendable pOut)
+            throws IOException {
+        // negative values are used, so Long.MIN_VALUE needs no special case.
+        long negative = pValue < 0 ? pValue : -pValue;
+        if (pValue < 0) {
+            pOut.append('-');
+        }
+        for (long power = highestPowerOfTen(negative); power > 0; power /= 10) {
+            pOut.append((char) ('0' - negative / power % 10));
+        }
+    }
+
+    /**
+     * Encodes the digits of the value into the buffer, starting at its
+     * position.
+     *
+     * @param pValue
+     *                    the value to encode.
+     * @param pBuffer
+     *                    the target buffer.
+     * @throws BufferOverflowException
+     *                                     if the buffer has not enough space
+     *                                     left.
+     */
+    public static void encode(long pValue, ByteBuffer pBuffer) {
+        long negative = pValue < 0 ? pValue : -pValue;
+        if (pValue < 0) {
+            pBuffer.put((byte) '-');
+        }
+        for (long power = highestPowerOfTen(negative); power > 0; power /= 10) {
+            pBuffer.put((byte) ('0' - negative / power % 10));
+        }
+    }
+
+    private static long highestPowerOfTen(long pNegative) {
+        long power = 1;
+        while (pNegative / power <= -10) {
+            power *= 10;
+        }
+        return power;
+    }
+
+    private Digits() {
+    }
+}
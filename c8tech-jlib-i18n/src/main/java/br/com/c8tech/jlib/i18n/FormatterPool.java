@@ -0,0 +1,172 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.Format;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Pools of the locale sensitive formatters used by typed format elements.
+ * {@link NumberFormat} and {@link MessageFormat} are costly to build from
+ * their patterns and not thread-safe, so every thread keeps its own instance
+ * of each locale and pattern and gets the same one on every call. The
+ * instance of a thread is cloned from a prototype shared by all threads,
+ * which is cheaper than parsing the pattern again.
+ * <p>
+ * The returned formatters belong to the calling thread: they must be used
+ * right away and must be neither kept, shared with other threads nor
+ * modified.
+ */
+public final class FormatterPool {
+
+    /**
+     * The formatters of one kind.
+     */
+    private static final class Pool<F extends Format> {
+
+        private final BiFunction<Locale, String, F> factory;
+
+        private final ConcurrentMap<Locale, ConcurrentMap<String, F>> prototypes = new ConcurrentHashMap<>();
+
+        private final ThreadLocal<Map<Locale, Map<String, F>>> instances = ThreadLocal
+                .withInitial(HashMap::new);
+
+        private Pool(BiFunction<Locale, String, F> pFactory) {
+            factory = pFactory;
+        }
+
+        private F get(Locale pLocale, String pPattern) {
+            Map<String, F> localeInstances = instances.get()
+                    .computeIfAbsent(pLocale, l -> new LinkedHashMap<>(16,
+                            0.75f, true) {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(
+                                Map.Entry<String, F> pEldest) {
+                            return size() > MAXIMUM_SIZE;
+                        }
+                    });
+            F instance = localeInstances.get(pPattern);
+            if (instance == null) {
+                instance = copy(pLocale, pPattern);
+                localeInstances.put(pPattern, instance);
+            }
+            return instance;
+        }
+
+        @SuppressWarnings("unchecked")
+        private F copy(Locale pLocale, String pPattern) {
+            ConcurrentMap<String, F> localePrototypes = prototypes
+                    .computeIfAbsent(pLocale, l -> new ConcurrentHashMap<>());
+            F prototype = localePrototypes.get(pPattern);
+            if (prototype == null) {
+                // patterns are usually the templates of the bundles, but
+                // templates known only at run time must not grow the pool
+                // forever, so one of the prototypes makes room for the new
+                // one.
+                if (localePrototypes.size() >= MAXIMUM_SIZE) {
+                    Iterator<String> patterns = localePrototypes.keySet()
+                            .iterator();
+                    if (patterns.hasNext()) {
+                        localePrototypes.remove(patterns.next());
+                    }
+                }
+                prototype = factory.apply(pLocale, pPattern);
+                F published = localePrototypes.putIfAbsent(pPattern,
+                        prototype);
+                if (published != null) {
+                    prototype = published;
+                }
+            }
+            return (F) prototype.clone();
+        }
+    }
+
+    /**
+     * The maximum number of formatters of each kind kept per locale, both
+     * shared and per thread.
+     */
+    private static final int MAXIMUM_SIZE = 256;
+
+    private static final Pool<MessageFormat> MESSAGE_FORMATS = new Pool<>(
+            (l, p) -> new MessageFormat(p, l));
+
+    private static final Pool<NumberFormat> NUMBER_FORMATS = new Pool<>(
+            FormatterPool::createNumberFormat);
+
+    /**
+     * Creates the number format selected by the style of a number format
+     * element, the same way {@link MessageFormat} does.
+     */
+    private static NumberFormat createNumberFormat(Locale pLocale,
+            String pStyle) {
+        switch (pStyle.trim().toLowerCase(Locale.ROOT)) {
+        case "":
+            return NumberFormat.getInstance(pLocale);
+        case "integer":
+            return NumberFormat.getIntegerInstance(pLocale);
+        case "currency":
+            return NumberFormat.getCurrencyInstance(pLocale);
+        case "percent":
+            return NumberFormat.getPercentInstance(pLocale);
+        default:
+            return new DecimalFormat(pStyle,
+                    DecimalFormatSymbols.getInstance(pLocale));
+        }
+    }
+
+    /**
+     * Returns the message format of the pattern of the calling thread.
+     *
+     * @param pLocale
+     *                     the locale.
+     * @param pPattern
+     *                     the {@link MessageFormat} pattern.
+     * @return the pooled message format.
+     */
+    public static MessageFormat getMessageFormat(Locale pLocale,
+            String pPattern) {
+        return MESSAGE_FORMATS.get(pLocale, pPattern);
+    }
+
+    /**
+     * Returns the number format of a number format element of the calling
+     * thread.
+     *
+     * @param pLocale
+     *                    the locale.
+     * @param pStyle
+     *                    the style of the element, such as {@code integer} or
+     *                    a decimal pattern, or null if it has none.
+     * @return the pooled number format.
+     */
+    public static NumberFormat getNumberFormat(Locale pLocale,
+            String pStyle) {
+        return NUMBER_FORMATS.get(pLocale, pStyle == null ? "" : pStyle);
+    }
+
+    private FormatterPool() {
+    }
+}
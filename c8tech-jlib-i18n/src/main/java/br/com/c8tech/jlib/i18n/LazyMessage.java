@@ -0,0 +1,65 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.util.function.Supplier;
+
+/**
+ * A message whose arguments were captured but which is only formatted when
+ * its text is first needed, for example by a logging framework that checked
+ * the level is enabled. The formatted text is kept afterwards.
+ * <p>
+ * Concurrent first requests may format the message more than once, which is
+ * harmless since the result is the same.
+ */
+public abstract class LazyMessage implements Supplier<String>, CharSequence {
+
+    private String message;
+
+    @Override
+    public final char charAt(int pIndex) {
+        return get().charAt(pIndex);
+    }
+
+    /**
+     * Formats the message. It is called at most once per thread that finds
+     * the message not yet formatted.
+     *
+     * @return the formatted message.
+     */
+    protected abstract String format();
+
+    @Override
+    public final String get() {
+        String result = message;
+        if (result == null) {
+            result = format();
+            message = result;
+        }
+        return result;
+    }
+
+    @Override
+    public final int length() {
+        return get().length();
+    }
+
+    @Override
+    public final CharSequence subSequence(int pStart, int pEnd) {
+        return get().subSequence(pStart, pEnd);
+    }
+
+    @Override
+    public final String toString() {
+        return get();
+    }
+}
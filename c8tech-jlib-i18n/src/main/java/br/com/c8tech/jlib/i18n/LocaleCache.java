@@ -0,0 +1,240 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * A cache of per-locale values backed by a {@link ConcurrentHashMap}.
+ * <p>
+ * Reads never lock. A missing value is loaded outside of any lock and
+ * published with {@code putIfAbsent}, so concurrent misses for the same
+ * locale may load it more than once but all of them observe the same
+ * instance afterwards.
+ * <p>
+ * Values may also be cached per position of the locale a requested one
+ * resolves to, so every locale served by the same messages, such as the
+ * regional variants falling back to their language, shares one value. The
+ * resolved positions are remembered per requested locale.
+ *
+ * @param <V>
+ *                the type of the cached values.
+ */
+public final class LocaleCache<V> {
+
+    /**
+     * The policies used to evict cached values.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Values are never evicted.
+         */
+        PINNED,
+        /**
+         * Values are held by soft references and may be reclaimed by the
+         * garbage collector under memory pressure.
+         */
+        SOFT,
+        /**
+         * At most {@code maximumSize} values are kept. When the bound is
+         * exceeded an arbitrary entry other than the new one is evicted.
+         */
+        BOUNDED
+    }
+
+    public static final String POLICY_PROPERTY = "br.com.c8tech.jlib.i18n.cache.policy";
+
+    public static final String MAXIMUM_SIZE_PROPERTY = "br.com.c8tech.jlib.i18n.cache.maximumSize";
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 64;
+
+    /**
+     * Creates a cache configured by the system properties
+     * {@value #POLICY_PROPERTY} (defaults to {@link EvictionPolicy#PINNED})
+     * and {@value #MAXIMUM_SIZE_PROPERTY} (defaults to 64).
+     *
+     * @param <V>
+     *                the type of the cached values.
+     * @return a new cache.
+     */
+    public static <V> LocaleCache<V> create() {
+        return create(MessageBundleMetrics.DISABLED);
+    }
+
+    /**
+     * Creates a cache configured by the system properties, like
+     * {@link #create()}, that records its hits, misses and evictions.
+     *
+     * @param <V>
+     *                     the type of the cached values.
+     * @param pMetrics
+     *                     the metrics of the message bundle owning the cache.
+     * @return a new cache.
+     */
+    public static <V> LocaleCache<V> create(MessageBundleMetrics pMetrics) {
+        return new LocaleCache<>(
+                EvictionPolicy.valueOf(System.getProperty(POLICY_PROPERTY,
+                        EvictionPolicy.PINNED.name())),
+                Integer.getInteger(MAXIMUM_SIZE_PROPERTY,
+                        DEFAULT_MAXIMUM_SIZE),
+                pMetrics);
+    }
+
+    private final ConcurrentMap<Object, Object> entries;
+
+    private final ConcurrentMap<Locale, Integer> indexes;
+
+    private final int maximumSize;
+
+    private final MessageBundleMetrics metrics;
+
+    private final EvictionPolicy policy;
+
+    public LocaleCache(EvictionPolicy pPolicy, int pMaximumSize) {
+        this(pPolicy, pMaximumSize, MessageBundleMetrics.DISABLED);
+    }
+
+    public LocaleCache(EvictionPolicy pPolicy, int pMaximumSize,
+            MessageBundleMetrics pMetrics) {
+        if (pMaximumSize < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum size must be positive.");
+        }
+        policy = Objects.requireNonNull(pPolicy);
+        maximumSize = pMaximumSize;
+        metrics = Objects.requireNonNull(pMetrics);
+        entries = new ConcurrentHashMap<>(
+                Math.min(pMaximumSize, DEFAULT_MAXIMUM_SIZE));
+        indexes = new ConcurrentHashMap<>(
+                Math.min(pMaximumSize, DEFAULT_MAXIMUM_SIZE));
+    }
+
+    public void clear() {
+        entries.clear();
+        indexes.clear();
+    }
+
+    private void evictIfNeeded(Object pKeep) {
+        Iterator<Object> keys = entries.keySet().iterator();
+        while (entries.size() > maximumSize && keys.hasNext()) {
+            Object key = keys.next();
+            if (!key.equals(pKeep)) {
+                keys.remove();
+                metrics.recordEviction();
+            }
+        }
+    }
+
+    /**
+     * Returns the value cached for the locale, loading it when absent.
+     *
+     * @param pLocale
+     *                    the locale.
+     * @param pLoader
+     *                    the function used to load a missing value. It must
+     *                    not return null.
+     * @return the cached value.
+     */
+    public V get(Locale pLocale, Function<Locale, V> pLoader) {
+        return get(pLocale, () -> pLoader.apply(pLocale));
+    }
+
+    /**
+     * Returns the value cached for the position the locale resolves to,
+     * loading it when absent. The locale is resolved only once.
+     *
+     * @param pLocale
+     *                      the locale.
+     * @param pResolver
+     *                      the function resolving the locale to the position
+     *                      of the locale serving it.
+     * @param pLoader
+     *                      the function used to load the missing value of a
+     *                      position. It must not return null.
+     * @return the cached value.
+     */
+    public V get(Locale pLocale, ToIntFunction<Locale> pResolver,
+            IntFunction<V> pLoader) {
+        Integer index = indexes.get(pLocale);
+        if (index == null) {
+            index = pResolver.applyAsInt(pLocale);
+            indexes.putIfAbsent(pLocale, index);
+            if (policy == EvictionPolicy.BOUNDED) {
+                // requested locales are not bounded by the bundle, unlike
+                // the positions they resolve to.
+                Iterator<Locale> locales = indexes.keySet().iterator();
+                while (indexes.size() > maximumSize && locales.hasNext()) {
+                    if (!locales.next().equals(pLocale)) {
+                        locales.remove();
+                    }
+                }
+            }
+        }
+        int position = index;
+        return get(index, () -> pLoader.apply(position));
+    }
+
+    private V get(Object pKey, Supplier<V> pLoader) {
+        Object entry = entries.get(pKey);
+        V value = unwrap(entry);
+        if (value != null) {
+            metrics.recordCacheHit();
+            return value;
+        }
+
+        long started = System.nanoTime();
+        value = Objects.requireNonNull(pLoader.get());
+        metrics.recordCacheMiss(System.nanoTime() - started);
+        Object newEntry = policy == EvictionPolicy.SOFT
+                ? new SoftReference<>(value)
+                : value;
+        // a value published by another thread meanwhile wins, while a
+        // reclaimed reference is replaced.
+        while (entry == null ? entries.putIfAbsent(pKey, newEntry) != null
+                : !entries.replace(pKey, entry, newEntry)) {
+            entry = entries.get(pKey);
+            V current = unwrap(entry);
+            if (current != null) {
+                return current;
+            }
+        }
+        if (policy == EvictionPolicy.BOUNDED) {
+            evictIfNeeded(pKey);
+        }
+        return value;
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unwrap(Object pEntry) {
+        if (pEntry instanceof SoftReference) {
+            return ((SoftReference<V>) pEntry).get();
+        }
+        return (V) pEntry;
+    }
+}
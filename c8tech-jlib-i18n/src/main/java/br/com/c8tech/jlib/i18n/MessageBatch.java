@@ -0,0 +1,179 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The locales of a batch of messages, grouped so the generated
+ * {@code <method>Batch} methods resolve the locale, the reloaded template and
+ * their output buffer once per group instead of once per message. The
+ * arguments of the messages are given in columns, one array per method
+ * parameter, holding the argument of each message at the position of its
+ * locale.
+ * <p>
+ * A batch only depends on its locales, so the same batch serves every
+ * message rendered for the same recipients. It may run its groups on a
+ * {@link ForkJoinPool}, split into chunks of {@link #CHUNK_SIZE} messages.
+ */
+public final class MessageBatch {
+
+    /**
+     * Renders the messages of a chunk of a locale group.
+     */
+    @FunctionalInterface
+    public interface Task {
+
+        /**
+         * @param pLocale
+         *                     the locale of the group.
+         * @param pIndexes
+         *                     the positions of the messages of every group.
+         * @param pFrom
+         *                     the first entry of the indexes to render.
+         * @param pTo
+         *                     the entry after the last one to render.
+         */
+        void render(Locale pLocale, int[] pIndexes, int pFrom, int pTo);
+    }
+
+    /**
+     * The number of messages rendered by each task of a parallel batch.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Groups the locales of a batch, keeping the order in which they first
+     * appear.
+     *
+     * @param pLocales
+     *                     the locale of each message.
+     * @return the batch.
+     */
+    public static MessageBatch of(Locale... pLocales) {
+        Map<Locale, int[]> counts = new LinkedHashMap<>();
+        for (Locale locale : pLocales) {
+            counts.computeIfAbsent(locale, l -> new int[1])[0]++;
+        }
+
+        Locale[] locales = counts.keySet().toArray(new Locale[0]);
+        int[] starts = new int[locales.length + 1];
+        Map<Locale, int[]> next = new LinkedHashMap<>();
+        for (int i = 0; i < locales.length; i++) {
+            starts[i + 1] = starts[i] + counts.get(locales[i])[0];
+            next.put(locales[i], new int[] { starts[i] });
+        }
+        int[] indexes = new int[pLocales.length];
+        for (int i = 0; i < pLocales.length; i++) {
+            indexes[next.get(pLocales[i])[0]++] = i;
+        }
+        return new MessageBatch(locales, starts, indexes, null);
+    }
+
+    private final int[] indexes;
+
+    private final Locale[] locales;
+
+    private final ForkJoinPool pool;
+
+    // the first entry of each group in the indexes, plus their length
+    private final int[] starts;
+
+    private MessageBatch(Locale[] pLocales, int[] pStarts, int[] pIndexes,
+            ForkJoinPool pPool) {
+        locales = pLocales;
+        starts = pStarts;
+        indexes = pIndexes;
+        pool = pPool;
+    }
+
+    /**
+     * @param pLength
+     *                    the length of an argument column.
+     * @throws IllegalArgumentException
+     *                                      if the column does not hold one
+     *                                      argument per message.
+     */
+    public void checkColumn(int pLength) {
+        if (pLength != indexes.length) {
+            throw new IllegalArgumentException("Expected " + indexes.length
+                    + " arguments but got " + pLength);
+        }
+    }
+
+    /**
+     * @return the number of distinct locales.
+     */
+    public int getLocaleCount() {
+        return locales.length;
+    }
+
+    /**
+     * @param pPool
+     *                  the pool running the chunks of the groups, null to run
+     *                  them on the calling thread.
+     * @return a batch of the same locales running on the pool.
+     */
+    public MessageBatch parallel(ForkJoinPool pPool) {
+        return new MessageBatch(locales, starts, indexes, pPool);
+    }
+
+    /**
+     * Renders every group, on the pool if the batch has one, and returns once
+     * all of them are done.
+     *
+     * @param pTask
+     *                  the task rendering a chunk of a group.
+     */
+    public void run(Task pTask) {
+        if (pool == null) {
+            for (int i = 0; i < locales.length; i++) {
+                pTask.render(locales[i], indexes, starts[i], starts[i + 1]);
+            }
+            return;
+        }
+
+        List<ForkJoinTask<?>> chunks = new ArrayList<>();
+        for (int i = 0; i < locales.length; i++) {
+            Locale locale = locales[i];
+            for (int from = starts[i]; from < starts[i + 1]; from += CHUNK_SIZE) {
+                int start = from;
+                int end = Math.min(from + CHUNK_SIZE, starts[i + 1]);
+                chunks.add(ForkJoinTask.adapt(
+                        () -> pTask.render(locale, indexes, start, end)));
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(chunks);
+            }
+        });
+    }
+
+    /**
+     * @return the number of messages.
+     */
+    public int size() {
+        return indexes.length;
+    }
+}
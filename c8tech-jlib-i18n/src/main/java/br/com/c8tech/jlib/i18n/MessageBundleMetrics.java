@@ -0,0 +1,142 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+/**
+ * Receives the usage events of a generated message bundle. One instance is
+ * created per implementation class, when it is initialized, and is called
+ * from the hot paths of the bundle, so implementations must be thread-safe
+ * and cheap.
+ * <p>
+ * Metrics are disabled by default, in which case every bundle shares
+ * {@link #DISABLED} and the calls are optimized away. They are enabled by
+ * registering a {@link MessageBundleMetricsFactory} with the
+ * {@link ServiceLoader}, or by setting the system property
+ * {@value #ENABLED_PROPERTY} to {@code true}, which records them in
+ * {@link StripedMessageBundleMetrics} published as JMX MXBeans.
+ */
+public interface MessageBundleMetrics {
+
+    /**
+     * Ignores every event.
+     */
+    MessageBundleMetrics DISABLED = new MessageBundleMetrics() {
+
+        @Override
+        public long startFormatting() {
+            return 0;
+        }
+    };
+
+    String ENABLED_PROPERTY = "br.com.c8tech.jlib.i18n.metrics.enabled";
+
+    /**
+     * Creates the metrics of a message bundle. The factory registered with
+     * the {@link ServiceLoader} is looked up only once.
+     *
+     * @param pBundleName
+     *                          the qualified name of the message bundle
+     *                          interface.
+     * @param pLanguageTags
+     *                          the locales of the message bundle, the default
+     *                          one first.
+     * @return the metrics of the bundle, never null.
+     */
+    static MessageBundleMetrics create(String pBundleName,
+            String[] pLanguageTags) {
+        MessageBundleMetricsFactory factory = MetricsFactoryHolder.FACTORY;
+        if (factory != null) {
+            return factory.create(pBundleName, pLanguageTags);
+        }
+        if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+            return StripedMessageBundleMetrics.register(pBundleName,
+                    pLanguageTags);
+        }
+        return DISABLED;
+    }
+
+    /**
+     * A locale table was found in the cache.
+     */
+    default void recordCacheHit() {
+    }
+
+    /**
+     * A locale table was missing from the cache and was loaded.
+     *
+     * @param pLoadNanos
+     *                       the time spent loading it.
+     */
+    default void recordCacheMiss(long pLoadNanos) {
+    }
+
+    /**
+     * A locale table was evicted from the cache.
+     */
+    default void recordEviction() {
+    }
+
+    /**
+     * A locale the bundle has no messages for was served by its default
+     * locale. It is recorded when the locale is first resolved.
+     *
+     * @param pLocale
+     *                    the requested locale.
+     */
+    default void recordFallback(Locale pLocale) {
+    }
+
+    /**
+     * A message with arguments was formatted, which also counts as a lookup.
+     *
+     * @param pLocaleIndex
+     *                         the position of the locale within the language
+     *                         tags.
+     * @param pStarted
+     *                         the value returned by {@link #startFormatting()}.
+     */
+    default void recordFormatting(int pLocaleIndex, long pStarted) {
+    }
+
+    /**
+     * A message without arguments was looked up.
+     *
+     * @param pLocaleIndex
+     *                         the position of the locale within the language
+     *                         tags.
+     */
+    default void recordLookup(int pLocaleIndex) {
+    }
+
+    /**
+     * A message was requested for a key the bundle does not have.
+     *
+     * @param pKey
+     *                 the missing key.
+     */
+    default void recordMissingKey(String pKey) {
+    }
+
+    /**
+     * Called before a message with arguments is formatted.
+     *
+     * @return the value to be passed to
+     *         {@link #recordFormatting(int, long)}, usually
+     *         {@link System#nanoTime()}.
+     */
+    default long startFormatting() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+/**
+ * The service provider interface creating the {@link MessageBundleMetrics} of
+ * each message bundle, for example to publish them to a metrics library. The
+ * first provider found by the {@link java.util.ServiceLoader} is used.
+ */
+public interface MessageBundleMetricsFactory {
+
+    /**
+     * @param pBundleName
+     *                          the qualified name of the message bundle
+     *                          interface.
+     * @param pLanguageTags
+     *                          the locales of the message bundle, the default
+     *                          one first.
+     * @return the metrics of the bundle, never null.
+     */
+    MessageBundleMetrics create(String pBundleName, String[] pLanguageTags);
+}
@@ -0,0 +1,60 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+/**
+ * The management interface of {@link StripedMessageBundleMetrics}, registered
+ * as {@code br.com.c8tech.jlib.i18n:type=MessageBundle,name=<bundle>}.
+ */
+public interface MessageBundleMetricsMXBean {
+
+    String getBundleName();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    long getEvictions();
+
+    long getFallbacks();
+
+    /**
+     * @return the number of formatted messages per locale, following the
+     *         order of the language tags.
+     */
+    long[] getFormattingCounts();
+
+    /**
+     * @return the number of formatted messages per latency bucket. Bucket
+     *         {@code i} counts the calls that took less than {@code 2^i}
+     *         nanoseconds and at least half of it, the last one holds the
+     *         slower calls.
+     */
+    long[] getFormattingLatencyHistogram();
+
+    String[] getLanguageTags();
+
+    long getLoadNanos();
+
+    /**
+     * @return the number of messages looked up per locale, following the
+     *         order of the language tags. Formatted messages are included.
+     */
+    long[] getLookupCounts();
+
+    long getMissingKeys();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,75 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The message bundles generated by a compilation and their locales, recorded
+ * by the annotation processor when the {@code Bundle.registry} option names
+ * the class to generate. The generated registry refers to each implementation
+ * directly, so warming the bundles at startup probes nothing on the class
+ * path, and it is registered with the {@link ServiceLoader}.
+ */
+public interface MessageBundleRegistry {
+
+    /**
+     * Loads the tables of the given locales of every bundle of every
+     * registry found by the {@link ServiceLoader}, in one pass.
+     *
+     * @param pExecutor
+     *                      the executor running the loads.
+     * @param pLocales
+     *                      the locales to load.
+     * @return a future completed once every table is cached.
+     */
+    static CompletableFuture<Void> preloadAll(Executor pExecutor,
+            Locale... pLocales) {
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (MessageBundleRegistry registry : ServiceLoader
+                .load(MessageBundleRegistry.class)) {
+            loads.add(registry.preload(pExecutor, pLocales));
+        }
+        return CompletableFuture
+                .allOf(loads.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * @return the qualified names of the message bundle interfaces.
+     */
+    List<String> getBundleNames();
+
+    /**
+     * @param pBundleName
+     *                        the qualified name of a message bundle interface.
+     * @return the locales of the bundle, the default one first, or an empty
+     *         list if the bundle is not registered.
+     */
+    List<String> getLanguageTags(String pBundleName);
+
+    /**
+     * Loads the tables of the given locales of every registered bundle, so
+     * the first messages requested in those locales find them cached.
+     *
+     * @param pExecutor
+     *                      the executor running the loads.
+     * @param pLocales
+     *                      the locales to load.
+     * @return a future completed once every table is cached.
+     */
+    CompletableFuture<Void> preload(Executor pExecutor, Locale... pLocales);
+}
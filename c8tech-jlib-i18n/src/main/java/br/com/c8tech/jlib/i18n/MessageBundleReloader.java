@@ -0,0 +1,425 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.PropertyResourceBundle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Replaces the message templates of a generated message bundle with the ones
+ * found in properties files of an external directory, so translations can be
+ * changed without a restart.
+ * <p>
+ * A file named {@code <baseName>_<languageTag>.properties} overrides the
+ * templates of the keys it holds for that locale and for the child locales
+ * that inherited them from it, following the same fallback chains the
+ * compiled tables were built with. Keys it lacks keep their compiled
+ * templates, and locales the bundle was not compiled with are ignored. The templates of a locale are parsed in full before being
+ * published with a single atomic swap, so readers never block nor observe a
+ * half loaded file. A file that fails to load leaves the templates published
+ * before in place. Changes are loaded once the directory stays unchanged for
+ * a moment, but files should still be replaced atomically, for example by
+ * moving a complete file over the old one, so a slow writer is never read
+ * midway.
+ * <p>
+ * Nothing is watched until {@link #watch(Path)} is called, and until then the
+ * bundles only pay for one volatile read per message, plus one per parent
+ * locale for messages inherited from parents.
+ */
+public final class MessageBundleReloader implements Closeable {
+
+    /**
+     * The reloaded templates of one locale.
+     */
+    private static final class Snapshot {
+
+        private final MessageTable table;
+
+        private final MessageTemplate[] templates;
+
+        private Snapshot(MessageTable pTable, MessageTemplate[] pTemplates) {
+            table = pTable;
+            templates = pTemplates;
+        }
+    }
+
+    private static final String EXTENSION = ".properties";
+
+    /**
+     * How long the directory must stay unchanged before the changed files are
+     * loaded.
+     */
+    private static final long SETTLE_MILLIS = 100;
+
+    private static final System.Logger LOGGER = System
+            .getLogger(MessageBundleReloader.class.getName());
+
+    private final String baseName;
+
+    private final int[][] fallbacks;
+
+    private final String[] keys;
+
+    private final String[] languageTags;
+
+    private final int[][] origins;
+
+    // a lock rather than a monitor, since files are read while holding it
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicReferenceArray<Snapshot> snapshots;
+
+    private WatchService watchService;
+
+    /**
+     * @param pBaseName
+     *                          the base name of the properties files.
+     * @param pLanguageTags
+     *                          the locales of the message bundle, the default
+     *                          one first.
+     * @param pKeys
+     *                          the sorted message keys.
+     */
+    public MessageBundleReloader(String pBaseName, String[] pLanguageTags,
+            String[] pKeys) {
+        this(pBaseName, pLanguageTags, pKeys,
+                new int[pLanguageTags.length][0], null);
+    }
+
+    /**
+     * @param pBaseName
+     *                          the base name of the properties files.
+     * @param pLanguageTags
+     *                          the locales of the message bundle, the default
+     *                          one first.
+     * @param pKeys
+     *                          the sorted message keys.
+     * @param pFallbacks
+     *                          the positions of the parent locales of each
+     *                          locale, the nearest first, without the default
+     *                          one.
+     * @param pOrigins
+     *                          for each locale and key, the position of the
+     *                          locale whose message the compiled table holds,
+     *                          or null if each locale holds its own.
+     */
+    public MessageBundleReloader(String pBaseName, String[] pLanguageTags,
+            String[] pKeys, int[][] pFallbacks, int[][] pOrigins) {
+        baseName = pBaseName;
+        languageTags = pLanguageTags;
+        keys = pKeys;
+        fallbacks = pFallbacks;
+        origins = pOrigins;
+        snapshots = new AtomicReferenceArray<>(pLanguageTags.length);
+    }
+
+    /**
+     * Stops watching. The templates reloaded so far stay in place.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (watchService != null) {
+                watchService.close();
+                watchService = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int findLocaleIndex(Path pFile) {
+        String fileName = pFile.getFileName().toString();
+        String prefix = baseName + "_";
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(EXTENSION)) {
+            return -1;
+        }
+        String tag = fileName.substring(prefix.length(),
+                fileName.length() - EXTENSION.length());
+        for (int i = 0; i < languageTags.length; i++) {
+            if (languageTags[i].equalsIgnoreCase(tag)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the snapshot holding the reloaded template of a key, walking
+     * the locale and its parents up to the default one. The walk stops at the
+     * locale the compiled message came from, since the locales after it are
+     * further away than the compiled message.
+     */
+    private Snapshot findSnapshot(int pLocaleIndex, int pIndex) {
+        int origin = origins == null ? pLocaleIndex
+                : origins[pLocaleIndex][pIndex];
+        int[] chain = fallbacks[pLocaleIndex];
+        for (int i = -1; i <= chain.length; i++) {
+            int candidate = i < 0 ? pLocaleIndex
+                    : i < chain.length ? chain[i] : 0;
+            Snapshot snapshot = snapshots.get(candidate);
+            if (snapshot != null && snapshot.templates[pIndex] != null) {
+                return snapshot;
+            }
+            if (candidate == origin) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param pLocaleIndex
+     *                         the position of the locale within the language
+     *                         tags.
+     * @param pIndex
+     *                         the index assigned to the message key.
+     * @return the reloaded message, rendered if it is static, or null if the
+     *         compiled one is in use.
+     */
+    String getMessage(int pLocaleIndex, int pIndex) {
+        Snapshot snapshot = findSnapshot(pLocaleIndex, pIndex);
+        return snapshot == null ? null : snapshot.table.get(pIndex);
+    }
+
+    /**
+     * @param pLocaleIndex
+     *                         the position of the locale within the language
+     *                         tags.
+     * @param pIndex
+     *                         the index assigned to the message key.
+     * @return the reloaded template or null if the compiled one is in use.
+     */
+    MessageTemplate getTemplate(int pLocaleIndex, int pIndex) {
+        Snapshot snapshot = findSnapshot(pLocaleIndex, pIndex);
+        return snapshot == null ? null : snapshot.templates[pIndex];
+    }
+
+    /**
+     * @param pLocaleIndex
+     *                         the position of the locale within the language
+     *                         tags.
+     * @param pIndex
+     *                         the index assigned to the message key.
+     * @return the UTF-8 encoding of the reloaded message, rendered if it is
+     *         static, or null if the compiled one is in use.
+     */
+    ByteBuffer getUtf8(int pLocaleIndex, int pIndex) {
+        Snapshot snapshot = findSnapshot(pLocaleIndex, pIndex);
+        return snapshot == null ? null : snapshot.table.getUtf8(pIndex);
+    }
+
+    /**
+     * @return true while the directory is being watched.
+     */
+    public boolean isWatching() {
+        lock.lock();
+        try {
+            return watchService != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void load(Path pFile, int pLocaleIndex) {
+        // the file is read before being parsed, since parsing holds the
+        // monitor of the properties.
+        PropertyResourceBundle properties;
+        try {
+            properties = new PropertyResourceBundle(
+                    new ByteArrayInputStream(Files.readAllBytes(pFile)));
+        } catch (NoSuchFileException e) {
+            snapshots.set(pLocaleIndex, null);
+            return;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Can't reload messages from " + pFile,
+                    e);
+            return;
+        }
+
+        String[] messages = new String[keys.length];
+        MessageTemplate[] templates = new MessageTemplate[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (properties.containsKey(keys[i])) {
+                try {
+                    // plural cases follow the language of the file, also
+                    // when children inherit its messages.
+                    templates[i] = MessageTemplate.parse(
+                            properties.getString(keys[i]),
+                            languageTags[pLocaleIndex]);
+                    messages[i] = templates[i].toTableEntry();
+                } catch (IllegalArgumentException e) {
+                    LOGGER.log(Level.WARNING, "Can't reload messages from "
+                            + pFile + ": key " + keys[i], e);
+                    return;
+                }
+            }
+        }
+        snapshots.set(pLocaleIndex, new Snapshot(
+                new MessageTable(pLocaleIndex, keys, messages), templates));
+    }
+
+    /**
+     * Loads the properties files of the directory once. Locales without a
+     * file go back to their compiled templates.
+     *
+     * @param pDirectory
+     *                       the directory holding the properties files.
+     * @throws IOException
+     *                         if the directory can't be listed.
+     */
+    public void reload(Path pDirectory) throws IOException {
+        boolean[] found = new boolean[languageTags.length];
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                pDirectory, baseName + "_*" + EXTENSION)) {
+            for (Path file : files) {
+                int localeIndex = findLocaleIndex(file);
+                if (localeIndex >= 0) {
+                    found[localeIndex] = true;
+                    load(file, localeIndex);
+                }
+            }
+        }
+        for (int i = 0; i < found.length; i++) {
+            if (!found[i]) {
+                snapshots.set(i, null);
+            }
+        }
+    }
+
+    private void run(WatchService pWatchService, Path pDirectory) {
+        try {
+            while (true) {
+                // files are often written in several steps, so the events
+                // are collected until the directory settles and each changed
+                // file is loaded once.
+                Path[] changed = new Path[languageTags.length];
+                boolean overflow = false;
+                WatchKey key = pWatchService.take();
+                while (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            overflow = true;
+                            continue;
+                        }
+                        Path file = pDirectory
+                                .resolve((Path) event.context());
+                        int localeIndex = findLocaleIndex(file);
+                        if (localeIndex >= 0) {
+                            changed[localeIndex] = file;
+                        }
+                    }
+                    if (!key.reset()) {
+                        LOGGER.log(Level.WARNING,
+                                "Stopped reloading messages from "
+                                        + pDirectory
+                                        + ", it is no longer accessible");
+                        stop(pWatchService);
+                        return;
+                    }
+                    key = pWatchService.poll(SETTLE_MILLIS,
+                            TimeUnit.MILLISECONDS);
+                }
+
+                if (overflow) {
+                    reload(pDirectory);
+                    continue;
+                }
+                for (int i = 0; i < changed.length; i++) {
+                    if (changed[i] != null) {
+                        // deleted files are reset by load
+                        load(changed[i], i);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed by close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING,
+                    "Stopped reloading messages from " + pDirectory, e);
+        }
+    }
+
+    private void stop(WatchService pWatchService) throws IOException {
+        lock.lock();
+        try {
+            // a newer watch may have replaced the stopped one already
+            if (watchService == pWatchService) {
+                close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads the properties files of the directory and keeps watching it,
+     * reloading the files of the locales that change on a daemon thread.
+     * Watching another directory stops watching the previous one.
+     *
+     * @param pDirectory
+     *                       the directory holding the properties files.
+     * @return this reloader, to be closed when watching should stop.
+     * @throws IOException
+     *                         if the directory can't be watched.
+     */
+    public MessageBundleReloader watch(Path pDirectory) throws IOException {
+        lock.lock();
+        try {
+            close();
+            WatchService service = pDirectory.getFileSystem()
+                    .newWatchService();
+            try {
+                pDirectory.register(service, ENTRY_CREATE, ENTRY_MODIFY,
+                        ENTRY_DELETE);
+                // files changed from now on are seen by the watcher, so
+                // nothing is missed between the initial load and the first
+                // event.
+                reload(pDirectory);
+            } catch (IOException e) {
+                service.close();
+                throw e;
+            }
+            watchService = service;
+            Thread watcher = new Thread(() -> run(service, pDirectory),
+                    "message-reloader-" + baseName);
+            watcher.setDaemon(true);
+            watcher.start();
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
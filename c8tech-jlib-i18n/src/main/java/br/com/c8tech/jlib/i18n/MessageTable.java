@@ -0,0 +1,165 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * The messages of a message bundle resolved for one locale. The templates are
+ * indexed by the dense index assigned to each message key at compile time.
+ * <p>
+ * A table may be created with a materializer, in which case each template is
+ * only produced when it is first requested. Concurrent first requests may
+ * materialize the same template more than once, which is harmless since
+ * strings are immutable.
+ * <p>
+ * The UTF-8 encoding of a template is also kept once it is first requested,
+ * so static messages can be written to byte oriented outputs without encoding
+ * them again. Unlike strings, buffers are mutable, so they are published
+ * through an {@link AtomicReferenceArray} and each caller gets a duplicate.
+ */
+public final class MessageTable {
+
+    private volatile AtomicReferenceArray<ByteBuffer> encoded;
+
+    private final IntFunction<ByteBuffer> encoder;
+
+    private final String[] keys;
+
+    private final int localeIndex;
+
+    private final IntFunction<String> materializer;
+
+    private final String[] messages;
+
+    /**
+     * Creates a table that materializes its templates on demand.
+     *
+     * @param pLocaleIndex
+     *                          the position of the resolved locale within the
+     *                          language tags of the message bundle.
+     * @param pKeys
+     *                          the sorted message keys.
+     * @param pMaterializer
+     *                          the function producing the template of a
+     *                          message index.
+     */
+    public MessageTable(int pLocaleIndex, String[] pKeys,
+            IntFunction<String> pMaterializer) {
+        this(pLocaleIndex, pKeys, pMaterializer, null);
+    }
+
+    /**
+     * Creates a table that materializes its templates and their UTF-8
+     * encoding on demand.
+     *
+     * @param pLocaleIndex
+     *                          the position of the resolved locale within the
+     *                          language tags of the message bundle.
+     * @param pKeys
+     *                          the sorted message keys.
+     * @param pMaterializer
+     *                          the function producing the template of a
+     *                          message index.
+     * @param pEncoder
+     *                          the function producing the read only UTF-8
+     *                          encoding of a message index or null to encode
+     *                          the template.
+     */
+    public MessageTable(int pLocaleIndex, String[] pKeys,
+            IntFunction<String> pMaterializer,
+            IntFunction<ByteBuffer> pEncoder) {
+        localeIndex = pLocaleIndex;
+        keys = pKeys;
+        materializer = pMaterializer;
+        encoder = pEncoder;
+        messages = new String[pKeys.length];
+    }
+
+    /**
+     * @param pLocaleIndex
+     *                         the position of the resolved locale within the
+     *                         language tags of the message bundle.
+     * @param pKeys
+     *                         the sorted message keys.
+     * @param pMessages
+     *                         the message templates, following the order of
+     *                         the keys.
+     */
+    public MessageTable(int pLocaleIndex, String[] pKeys, String[] pMessages) {
+        localeIndex = pLocaleIndex;
+        keys = pKeys;
+        materializer = null;
+        encoder = null;
+        messages = pMessages;
+    }
+
+    public String get(int pIndex) {
+        String message = messages[pIndex];
+        if (message == null && materializer != null) {
+            message = materializer.apply(pIndex);
+            messages[pIndex] = message;
+        }
+        return message;
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the message stored at the given index,
+     * which is the rendered text of a static message. It is encoded only
+     * once, when first requested.
+     *
+     * @param pIndex
+     *                   the index assigned to the message key.
+     * @return a read only buffer positioned at the start of the encoding.
+     */
+    public ByteBuffer getUtf8(int pIndex) {
+        AtomicReferenceArray<ByteBuffer> buffers = encoded;
+        if (buffers == null) {
+            // a racing caller may replace the array, losing some encodings
+            // that are simply computed again.
+            buffers = new AtomicReferenceArray<>(messages.length);
+            encoded = buffers;
+        }
+        ByteBuffer bytes = buffers.get(pIndex);
+        if (bytes == null) {
+            bytes = encoder != null ? encoder.apply(pIndex)
+                    : ByteBuffer
+                            .wrap(get(pIndex).getBytes(StandardCharsets.UTF_8))
+                            .asReadOnlyBuffer();
+            buffers.set(pIndex, bytes);
+        }
+        // each caller gets its own position and limit
+        return bytes.duplicate();
+    }
+
+    public int getLocaleIndex() {
+        return localeIndex;
+    }
+
+    /**
+     * @param pKey
+     *                 the message key.
+     * @return the index assigned to the key or a negative value if it is
+     *         unknown.
+     */
+    public int indexOf(String pKey) {
+        return Arrays.binarySearch(keys, pKey);
+    }
+
+    public int size() {
+        return messages.length;
+    }
+}
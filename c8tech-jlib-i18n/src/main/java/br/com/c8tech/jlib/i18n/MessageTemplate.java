@@ -0,0 +1,576 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A message template split into literal and argument tokens. It is shared by
+ * the annotation processor, which validates templates and generates code from
+ * their tokens, and the runtime, which formats templates not known at compile
+ * time.
+ * <p>
+ * The syntax follows {@link MessageFormat}: a single quote starts a quoted
+ * literal, two single quotes stand for one, and a format element has the form
+ * {@code {index}}, {@code {index,type}} or {@code {index,type,style}}, where
+ * the index may have any number of digits and the style may nest format
+ * elements, as choice formats do. Like {@link MessageFormat}, an unterminated
+ * quote extends to the end of the template.
+ * <p>
+ * Besides the {@link MessageFormat} types, the ICU {@code plural} and
+ * {@code select} types choose a case by their argument, as in
+ * {@code {0,plural,=0{no files} one{# file} other{# files}}} or
+ * {@code {1,select,female{she} male{he} other{they}}}. A plural case is named
+ * by an exact value like {@code =0} or by a {@link PluralCategory}, selected
+ * by the {@link PluralRules} of the language the template is written in, as
+ * the generated methods do, or of the formatting locale if it is not known,
+ * and a {@code #} inside it stands for the number. Every plural and select element needs an {@code other}
+ * case.
+ * <p>
+ * Arguments of format elements without a type are always appended with
+ * {@link String#valueOf(Object)}, as the generated methods do, whatever the
+ * other elements of the template. Each typed element is formatted on its own
+ * by a {@link MessageFormat} of the {@link FormatterPool}.
+ */
+public final class MessageTemplate {
+
+    /**
+     * A literal segment or a format element of a template.
+     */
+    public static final class Token {
+
+        private final int argumentIndex;
+
+        private final Map<String, MessageTemplate> cases;
+
+        private final String formatStyle;
+
+        private final String formatType;
+
+        private final String text;
+
+        private Token(int pArgumentIndex, String pText, String pFormatType,
+                String pFormatStyle) {
+            this(pArgumentIndex, pText, pFormatType, pFormatStyle, Map.of());
+        }
+
+        private Token(int pArgumentIndex, String pText, String pFormatType,
+                String pFormatStyle, Map<String, MessageTemplate> pCases) {
+            argumentIndex = pArgumentIndex;
+            text = pText;
+            formatType = pFormatType;
+            formatStyle = pFormatStyle;
+            cases = pCases;
+        }
+
+        /**
+         * @return the cases of a plural or select element by their keyword,
+         *         in template order, or an empty map for other tokens.
+         */
+        public Map<String, MessageTemplate> getCases() {
+            return cases;
+        }
+
+        /**
+         * @return the argument index of a format element or -1 for a literal.
+         */
+        public int getArgumentIndex() {
+            return argumentIndex;
+        }
+
+        /**
+         * @return the raw style of a format element or null if it has none.
+         */
+        public String getFormatStyle() {
+            return formatStyle;
+        }
+
+        /**
+         * @return the type of a format element or null if it has none.
+         */
+        public String getFormatType() {
+            return formatType;
+        }
+
+        /**
+         * @return the unquoted text of a literal or the source of a format
+         *         element.
+         */
+        public String getText() {
+            return text;
+        }
+
+        public boolean isArgument() {
+            return argumentIndex >= 0;
+        }
+
+        /**
+         * @return true for a plural or select element.
+         */
+        public boolean isBranched() {
+            return !cases.isEmpty();
+        }
+
+        public boolean isTyped() {
+            return formatType != null;
+        }
+    }
+
+    /**
+     * The format types understood by {@link MessageFormat}, plus the plural
+     * and select types.
+     */
+    public static final Set<String> FORMAT_TYPES = Set.of("number", "date",
+            "time", "choice", "plural", "select");
+
+    private static final char QUOTE = '\'';
+
+    private static IllegalArgumentException error(String pMessage,
+            String pPattern, int pPosition) {
+        return new IllegalArgumentException(pMessage + " at position "
+                + pPosition + " of pattern '" + pPattern + "'");
+    }
+
+    /**
+     * Splits the pattern into tokens in a single pass.
+     *
+     * @param pPattern
+     *                     the message template.
+     * @return the parsed template.
+     * @throws IllegalArgumentException
+     *                                      if the pattern is malformed.
+     */
+    public static MessageTemplate parse(String pPattern) {
+        return parse(pPattern, -1);
+    }
+
+    /**
+     * Splits the pattern of a message written in the given language, whose
+     * plural rules select the plural cases.
+     *
+     * @param pPattern
+     *                         the message template.
+     * @param pLanguageTag
+     *                         the language of the template.
+     * @return the parsed template.
+     * @throws IllegalArgumentException
+     *                                      if the pattern is malformed.
+     */
+    public static MessageTemplate parse(String pPattern,
+            String pLanguageTag) {
+        MessageTemplate template = parse(pPattern, -1);
+        return new MessageTemplate(template.pattern, template.tokens,
+                template.argumentCount, template.literalLength,
+                template.typed, template.branched,
+                PluralRules.forLanguageTag(pLanguageTag));
+    }
+
+    /**
+     * @param pNumberIndex
+     *                         the argument index a {@code #} stands for inside
+     *                         a plural case, -1 outside plural cases.
+     */
+    private static MessageTemplate parse(String pPattern, int pNumberIndex) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(pPattern.length());
+        boolean quoted = false;
+        boolean typed = false;
+        boolean branched = false;
+        int argumentCount = 0;
+        int literalLength = 0;
+        int length = pPattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pPattern.charAt(i);
+            if (c == QUOTE) {
+                if (i + 1 < length && pPattern.charAt(i + 1) == QUOTE) {
+                    literal.append(QUOTE);
+                    i += 2;
+                } else {
+                    quoted = !quoted;
+                    i++;
+                }
+            } else if (c == '{' && !quoted) {
+                if (literal.length() > 0) {
+                    literalLength += literal.length();
+                    tokens.add(new Token(-1, literal.toString(), null, null));
+                    literal.setLength(0);
+                }
+                int end = scanFormatElement(pPattern, i);
+                Token token = parseFormatElement(pPattern, i, end,
+                        pNumberIndex);
+                typed |= token.isTyped();
+                branched |= token.isBranched();
+                argumentCount = Math.max(argumentCount,
+                        token.getArgumentIndex() + 1);
+                for (MessageTemplate template : token.getCases().values()) {
+                    argumentCount = Math.max(argumentCount,
+                            template.getArgumentCount());
+                }
+                tokens.add(token);
+                i = end + 1;
+            } else if (c == '#' && !quoted && pNumberIndex >= 0) {
+                if (literal.length() > 0) {
+                    literalLength += literal.length();
+                    tokens.add(new Token(-1, literal.toString(), null, null));
+                    literal.setLength(0);
+                }
+                tokens.add(new Token(pNumberIndex,
+                        "{" + pNumberIndex + ",number}", "number", null));
+                typed = true;
+                i++;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            literalLength += literal.length();
+            tokens.add(new Token(-1, literal.toString(), null, null));
+        }
+        return new MessageTemplate(pPattern, tokens, argumentCount,
+                literalLength, typed, branched, null);
+    }
+
+    /**
+     * Parses the cases of a plural or select element, each one a keyword
+     * followed by a sub-template in braces.
+     */
+    private static Map<String, MessageTemplate> parseCases(String pPattern,
+            String pType, int pStart, int pEnd, int pIndex,
+            int pNumberIndex) {
+        Map<String, MessageTemplate> cases = new LinkedHashMap<>();
+        boolean plural = "plural".equals(pType);
+        int i = pStart;
+        while (true) {
+            while (i < pEnd && Character.isWhitespace(pPattern.charAt(i))) {
+                i++;
+            }
+            if (i == pEnd) {
+                break;
+            }
+            int keywordStart = i;
+            while (i < pEnd && pPattern.charAt(i) != '{'
+                    && !Character.isWhitespace(pPattern.charAt(i))) {
+                i++;
+            }
+            String keyword = pPattern.substring(keywordStart, i);
+            while (i < pEnd && Character.isWhitespace(pPattern.charAt(i))) {
+                i++;
+            }
+            if (keyword.isEmpty() || i == pEnd || pPattern.charAt(i) != '{') {
+                throw error("Expected a case keyword followed by a message",
+                        pPattern, keywordStart);
+            }
+            if (plural ? !isPluralKeyword(keyword)
+                    : !keyword.chars().allMatch(
+                            c -> Character.isLetterOrDigit(c) || c == '_'
+                                    || c == '-')) {
+                throw error("Invalid " + pType + " case '" + keyword + "'",
+                        pPattern, keywordStart);
+            }
+            int end = scanFormatElement(pPattern, i);
+            if (end >= pEnd) {
+                throw error("Unmatched braces", pPattern, i);
+            }
+            if (cases.put(keyword, parse(pPattern.substring(i + 1, end),
+                    plural ? pIndex : pNumberIndex)) != null) {
+                throw error("Duplicate " + pType + " case '" + keyword + "'",
+                        pPattern, keywordStart);
+            }
+            i = end + 1;
+        }
+        if (!cases.containsKey(PluralCategory.OTHER.getKeyword())) {
+            throw error("Missing 'other' case", pPattern, pStart);
+        }
+        return Collections.unmodifiableMap(cases);
+    }
+
+    private static boolean isPluralKeyword(String pKeyword) {
+        if (pKeyword.startsWith("=")) {
+            return pKeyword.length() > 1 && pKeyword.chars().skip(1)
+                    .allMatch(c -> c >= '0' && c <= '9');
+        }
+        return PluralCategory.of(pKeyword) != null;
+    }
+
+    private static int parseArgumentIndex(String pPattern, int pStart,
+            int pEnd) {
+        int start = pStart;
+        int end = pEnd;
+        while (start < end && Character.isWhitespace(pPattern.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(pPattern.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            throw error("Can't parse argument number", pPattern, pStart);
+        }
+        int index = 0;
+        for (int i = start; i < end; i++) {
+            char c = pPattern.charAt(i);
+            if (c < '0' || c > '9') {
+                throw error("Can't parse argument number", pPattern, pStart);
+            }
+            if (index > (Integer.MAX_VALUE - 9) / 10) {
+                throw error("Argument index too large", pPattern, pStart);
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    private static Token parseFormatElement(String pPattern, int pStart,
+            int pEnd, int pNumberIndex) {
+        int firstComma = pPattern.indexOf(',', pStart);
+        if (firstComma < 0 || firstComma > pEnd) {
+            firstComma = pEnd;
+        }
+        int index = parseArgumentIndex(pPattern, pStart + 1, firstComma);
+        String source = pPattern.substring(pStart, pEnd + 1);
+        if (firstComma == pEnd) {
+            return new Token(index, source, null, null);
+        }
+
+        int secondComma = pPattern.indexOf(',', firstComma + 1);
+        if (secondComma < 0 || secondComma > pEnd) {
+            secondComma = pEnd;
+        }
+        String type = pPattern.substring(firstComma + 1, secondComma).trim();
+        if (!FORMAT_TYPES.contains(type)) {
+            throw error("Unknown format type '" + type + "'", pPattern,
+                    firstComma + 1);
+        }
+        String style = secondComma == pEnd ? null
+                : pPattern.substring(secondComma + 1, pEnd);
+        if (("choice".equals(type) || "plural".equals(type)
+                || "select".equals(type))
+                && (style == null || style.isBlank())) {
+            throw error("Missing " + type + " format style", pPattern, pStart);
+        }
+        if ("plural".equals(type) || "select".equals(type)) {
+            return new Token(index, source, type, style, parseCases(pPattern,
+                    type, secondComma + 1, pEnd, index, pNumberIndex));
+        }
+        return new Token(index, source, type, style);
+    }
+
+    /**
+     * Returns the position of the brace closing the format element starting
+     * at the given position. Braces inside the style are counted, so nested
+     * elements are skipped, and quoted braces are ignored.
+     */
+    private static int scanFormatElement(String pPattern, int pStart) {
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = pStart; i < pPattern.length(); i++) {
+            char c = pPattern.charAt(i);
+            if (c == QUOTE) {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    return i;
+                }
+            }
+        }
+        throw error("Unmatched braces", pPattern, pStart);
+    }
+
+    private final int argumentCount;
+
+    private final boolean branched;
+
+    private final int literalLength;
+
+    private final String pattern;
+
+    private final List<Token> tokens;
+
+    private final boolean typed;
+
+    // null if the language of the template is not known
+    private final PluralRules pluralRules;
+
+    private MessageTemplate(String pPattern, List<Token> pTokens,
+            int pArgumentCount, int pLiteralLength, boolean pTyped,
+            boolean pBranched, PluralRules pPluralRules) {
+        pattern = pPattern;
+        pluralRules = pPluralRules;
+        branched = pBranched;
+        tokens = Collections.unmodifiableList(pTokens);
+        argumentCount = pArgumentCount;
+        literalLength = pLiteralLength;
+        typed = pTyped;
+    }
+
+    /**
+     * Formats the template. Missing arguments are rendered as their format
+     * element source.
+     *
+     * @param pLocale
+     *                       the locale used by typed format elements.
+     * @param pArguments
+     *                       the arguments.
+     * @return the formatted message.
+     */
+    public String format(Locale pLocale, Object... pArguments) {
+        if (branched || typed) {
+            StringBuilder builder = new StringBuilder(
+                    literalLength + argumentCount * 16);
+            formatTo(builder, pLocale, pluralRules != null ? pluralRules
+                    : PluralRules.forLocale(pLocale), pArguments);
+            return builder.toString();
+        }
+        if (argumentCount == 0 && tokens.size() <= 1) {
+            return tokens.isEmpty() ? "" : tokens.get(0).getText();
+        }
+        StringBuilder builder = new StringBuilder(
+                literalLength + argumentCount * 16);
+        for (Token token : tokens) {
+            int index = token.getArgumentIndex();
+            if (index < 0) {
+                builder.append(token.getText());
+            } else if (index < pArguments.length) {
+                builder.append(pArguments[index]);
+            } else {
+                builder.append(token.getText());
+            }
+        }
+        return builder.toString();
+    }
+
+    private void formatTo(StringBuilder pBuilder, Locale pLocale,
+            PluralRules pPluralRules, Object[] pArguments) {
+        for (Token token : tokens) {
+            int index = token.getArgumentIndex();
+            if (index < 0) {
+                pBuilder.append(token.getText());
+            } else if (index >= pArguments.length) {
+                pBuilder.append(token.getText());
+            } else if (token.isBranched()) {
+                selectCase(token, pPluralRules, pArguments[index])
+                        .formatTo(pBuilder, pLocale, pPluralRules,
+                                pArguments);
+            } else if (token.isTyped()) {
+                pBuilder.append(FormatterPool
+                        .getMessageFormat(pLocale, token.getText())
+                        .format(pArguments));
+            } else {
+                pBuilder.append(pArguments[index]);
+            }
+        }
+    }
+
+    /**
+     * Selects the case of a plural or select element. Plural arguments are
+     * matched against exact values and categories when they are integral,
+     * other numbers fall in the other case.
+     */
+    private static MessageTemplate selectCase(Token pToken,
+            PluralRules pPluralRules, Object pArgument) {
+        Map<String, MessageTemplate> cases = pToken.getCases();
+        MessageTemplate selected = null;
+        if (!"plural".equals(pToken.getFormatType())) {
+            selected = cases.get(String.valueOf(pArgument));
+        } else if (pArgument instanceof Number) {
+            Number number = (Number) pArgument;
+            double value = number.doubleValue();
+            if (value == Math.rint(value) && !Double.isInfinite(value)) {
+                long count = number.longValue();
+                selected = cases.get("=" + count);
+                if (selected == null) {
+                    selected = cases.get(
+                            pPluralRules.select(count).getKeyword());
+                }
+            }
+        }
+        return selected == null
+                ? cases.get(PluralCategory.OTHER.getKeyword())
+                : selected;
+    }
+
+    /**
+     * Returns the tokens of the template followed, for each plural and select
+     * element, by the tokens of its cases.
+     *
+     * @return the tokens, depth first.
+     */
+    public Stream<Token> flattenTokens() {
+        return tokens.stream().flatMap(t -> Stream.concat(Stream.of(t),
+                t.getCases().values().stream()
+                        .flatMap(MessageTemplate::flattenTokens)));
+    }
+
+    /**
+     * @return the highest argument index referenced plus one.
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    /**
+     * @return the number of literal characters of the template.
+     */
+    public int getLiteralLength() {
+        return literalLength;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns the text the message tables hold for the template. A template
+     * without arguments is a static message, which is stored rendered, with
+     * its quotes resolved, so it is served as it is. Other templates are
+     * stored as their pattern.
+     *
+     * @return the rendered message or the pattern.
+     */
+    public String toTableEntry() {
+        return argumentCount == 0 ? format(Locale.ROOT) : pattern;
+    }
+
+    public List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return true if any format element is a plural or select element.
+     */
+    public boolean isBranched() {
+        return branched;
+    }
+
+    /**
+     * @return true if any format element has a type.
+     */
+    public boolean isTyped() {
+        return typed;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link MessageBundleMetricsFactory} registered with the
+ * {@link ServiceLoader}. It is looked up once, when the first bundle creates
+ * its metrics, instead of scanning the class path for every bundle.
+ */
+final class MetricsFactoryHolder {
+
+    /**
+     * The first factory found, or null if none is registered.
+     */
+    static final MessageBundleMetricsFactory FACTORY = findFactory();
+
+    private static MessageBundleMetricsFactory findFactory() {
+        Iterator<MessageBundleMetricsFactory> factories = ServiceLoader
+                .load(MessageBundleMetricsFactory.class,
+                        MessageBundleMetrics.class.getClassLoader())
+                .iterator();
+        return factories.hasNext() ? factories.next() : null;
+    }
+
+    private MetricsFactoryHolder() {
+    }
+}
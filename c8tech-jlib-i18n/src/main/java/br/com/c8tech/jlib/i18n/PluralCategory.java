@@ -0,0 +1,46 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.util.Locale;
+
+/**
+ * The CLDR plural categories, which name the cases of a plural format
+ * element.
+ */
+public enum PluralCategory {
+
+    ZERO, ONE, TWO, FEW, MANY, OTHER;
+
+    /**
+     * @param pKeyword
+     *                     a case keyword of a plural format element.
+     * @return the category named by the keyword or null if it is not one.
+     */
+    public static PluralCategory of(String pKeyword) {
+        for (PluralCategory category : values()) {
+            if (category.getKeyword().equals(pKeyword)) {
+                return category;
+            }
+        }
+        return null;
+    }
+
+    private final String keyword = name().toLowerCase(Locale.ROOT);
+
+    /**
+     * @return the keyword naming the category in templates.
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+}
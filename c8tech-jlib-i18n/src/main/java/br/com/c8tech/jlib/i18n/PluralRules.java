@@ -0,0 +1,371 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The CLDR cardinal plural rules of a language, restricted to integers, which
+ * is what messages counting things need. The rules of each category are kept
+ * in the CLDR syntax, using only the {@code n} operand, and parsed once.
+ * <p>
+ * The annotation processor compiles the rules of the locales of a bundle into
+ * plain comparisons, while {@link MessageTemplate} evaluates them for the
+ * templates it formats at run time. Languages without rules here only have
+ * the {@link PluralCategory#OTHER} category.
+ */
+public final class PluralRules {
+
+    /**
+     * The condition of a plural category.
+     */
+    public static final class Rule {
+
+        private final PluralCategory category;
+
+        // relations joined by "and", joined by "or"
+        private final List<List<Relation>> conditions;
+
+        private final String source;
+
+        private Rule(PluralCategory pCategory, String pSource) {
+            category = pCategory;
+            source = pSource;
+            conditions = new ArrayList<>();
+            for (String and : pSource.split(" or ")) {
+                List<Relation> relations = new ArrayList<>();
+                for (String relation : and.split(" and ")) {
+                    relations.add(Relation.parse(relation.trim(), pSource));
+                }
+                conditions.add(relations);
+            }
+        }
+
+        public PluralCategory getCategory() {
+            return category;
+        }
+
+        /**
+         * @return the condition in the CLDR syntax.
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * @param pNumber
+         *                    the {@link PluralRules#magnitude(long)} of the
+         *                    number.
+         * @return true if the number belongs to the category.
+         */
+        public boolean matches(long pNumber) {
+            for (List<Relation> relations : conditions) {
+                boolean matches = true;
+                for (Relation relation : relations) {
+                    matches &= relation.matches(pNumber);
+                }
+                if (matches) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Translates the condition into a Java boolean expression, so it can
+         * be compiled into generated code.
+         *
+         * @param pOperand
+         *                     the name of a {@code long} variable holding the
+         *                     {@link PluralRules#magnitude(long)} of the
+         *                     number.
+         * @return the expression.
+         */
+        public String toJavaExpression(String pOperand) {
+            List<String> ors = new ArrayList<>(conditions.size());
+            for (List<Relation> relations : conditions) {
+                List<String> ands = new ArrayList<>(relations.size());
+                for (Relation relation : relations) {
+                    ands.add(relation.toJavaExpression(pOperand,
+                            relations.size() > 1 || conditions.size() > 1));
+                }
+                ors.add(String.join(" && ", ands));
+            }
+            return String.join(" || ", ors);
+        }
+
+        @Override
+        public String toString() {
+            return category.getKeyword() + ": " + source;
+        }
+    }
+
+    /**
+     * A relation such as {@code n % 10 = 2..4,7} or {@code n != 1}.
+     */
+    private static final class Relation {
+
+        static Relation parse(String pRelation, String pSource) {
+            boolean negated = pRelation.contains("!=");
+            String[] sides = pRelation.split(negated ? "!=" : "=");
+            if (sides.length != 2) {
+                throw new IllegalArgumentException(
+                        "Can't parse plural rule '" + pSource + "'");
+            }
+            String[] expression = sides[0].trim().split("%");
+            if (!"n".equals(expression[0].trim())) {
+                throw new IllegalArgumentException("Unsupported operand in "
+                        + "plural rule '" + pSource + "'");
+            }
+            long modulus = expression.length > 1
+                    ? Long.parseLong(expression[1].trim())
+                    : 0;
+            // magnitude() keeps the remainders of these moduli only
+            if (modulus < 0 || modulus > 0 && MAGNITUDE_MODULUS % modulus != 0) {
+                throw new IllegalArgumentException("Unsupported modulus in "
+                        + "plural rule '" + pSource + "'");
+            }
+            String[] values = sides[1].trim().split(",");
+            long[] ranges = new long[values.length * 2];
+            for (int i = 0; i < values.length; i++) {
+                String[] bounds = values[i].trim().split("\\.\\.");
+                ranges[i * 2] = Long.parseLong(bounds[0]);
+                ranges[i * 2 + 1] = Long.parseLong(bounds[bounds.length - 1]);
+            }
+            return new Relation(modulus, negated, ranges);
+        }
+
+        private final long modulus;
+
+        private final boolean negated;
+
+        // pairs of inclusive bounds
+        private final long[] ranges;
+
+        private Relation(long pModulus, boolean pNegated, long[] pRanges) {
+            modulus = pModulus;
+            negated = pNegated;
+            ranges = pRanges;
+        }
+
+        boolean matches(long pNumber) {
+            long value = modulus == 0 ? pNumber : pNumber % modulus;
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (value >= ranges[i] && value <= ranges[i + 1]) {
+                    return !negated;
+                }
+            }
+            return negated;
+        }
+
+        String toJavaExpression(String pOperand, boolean pNested) {
+            String value = modulus == 0 ? pOperand
+                    : pOperand + " % " + modulus;
+            if (ranges.length == 2 && ranges[0] == ranges[1]) {
+                return value + (negated ? " != " : " == ") + ranges[0];
+            }
+            List<String> ors = new ArrayList<>(ranges.length / 2);
+            for (int i = 0; i < ranges.length; i += 2) {
+                ors.add(ranges[i] == ranges[i + 1]
+                        ? value + " == " + ranges[i]
+                        : value + " >= " + ranges[i] + " && " + value + " <= "
+                                + ranges[i + 1]);
+            }
+            String expression = String.join(" || ", ors);
+            if (negated) {
+                return "!(" + expression + ")";
+            }
+            return pNested || ors.size() > 1 ? "(" + expression + ")"
+                    : expression;
+        }
+    }
+
+    /**
+     * The moduli of the rules must divide it, so {@link #magnitude(long)}
+     * preserves their remainders.
+     */
+    private static final long MAGNITUDE_MODULUS = 1_000_000;
+
+    private static final Map<String, PluralRules> RULES = new HashMap<>();
+
+    private static final PluralRules ROOT = new PluralRules("");
+
+    static {
+        String millions = "n != 0 and n % 1000000 = 0";
+        String slavic = "n % 10 = 2..4 and n % 100 != 12..14";
+        define(new String[] { "bg", "da", "de", "el", "en", "et", "fi", "hu",
+                "nb", "nl", "no", "sv", "tr" }, "n = 1");
+        define(new String[] { "ca", "es", "it", "pt-PT" }, "n = 1", null,
+                null, millions);
+        define(new String[] { "fr", "pt" }, "n = 0,1", null, null, millions);
+        define(new String[] { "hi" }, "n = 0,1");
+        define(new String[] { "cs", "sk" }, "n = 1", null, "n = 2..4");
+        define(new String[] { "bs", "hr", "sr" },
+                "n % 10 = 1 and n % 100 != 11", null, slavic);
+        define(new String[] { "ru", "uk" }, "n % 10 = 1 and n % 100 != 11",
+                null, slavic, "n % 10 = 0 or n % 10 = 5..9 or n % 100 = 11..14");
+        define(new String[] { "pl" }, "n = 1", null, slavic,
+                "n != 1 and n % 10 = 0..1 or n % 10 = 5..9 or n % 100 = 12..14");
+        define(new String[] { "ro" }, "n = 1", null,
+                "n = 0 or n % 100 = 2..19");
+        define(new String[] { "lt" }, "n % 10 = 1 and n % 100 != 11..19",
+                null, "n % 10 = 2..9 and n % 100 != 11..19");
+        define(new String[] { "he" }, "n = 1", "n = 2");
+        RULES.put("lv", new PluralRules("lv")
+                .add(PluralCategory.ZERO, "n % 10 = 0 or n % 100 = 11..19")
+                .add(PluralCategory.ONE, "n % 10 = 1 and n % 100 != 11"));
+        RULES.put("ar", new PluralRules("ar").add(PluralCategory.ZERO, "n = 0")
+                .add(PluralCategory.ONE, "n = 1")
+                .add(PluralCategory.TWO, "n = 2")
+                .add(PluralCategory.FEW, "n % 100 = 3..10")
+                .add(PluralCategory.MANY, "n % 100 = 11..99"));
+    }
+
+    /**
+     * Defines the rules of the languages, given in the order one, two, few
+     * and many, null for the categories the languages lack.
+     */
+    private static void define(String[] pLanguageTags, String... pRules) {
+        PluralCategory[] categories = { PluralCategory.ONE,
+                PluralCategory.TWO, PluralCategory.FEW, PluralCategory.MANY };
+        for (String languageTag : pLanguageTags) {
+            PluralRules rules = new PluralRules(languageTag);
+            for (int i = 0; i < pRules.length; i++) {
+                if (pRules[i] != null) {
+                    rules.add(categories[i], pRules[i]);
+                }
+            }
+            RULES.put(languageTag, rules);
+        }
+    }
+
+    /**
+     * Returns the rules of the language tag, looking for its language and
+     * country first, then for its language alone.
+     *
+     * @param pLanguageTag
+     *                         a IETF BCP 47 language tag.
+     * @return the rules, which have no category but other if the language is
+     *         not known.
+     */
+    public static PluralRules forLanguageTag(String pLanguageTag) {
+        return forLocale(Locale.forLanguageTag(pLanguageTag));
+    }
+
+    /**
+     * Returns the rules of the locale, looking for its language and country
+     * first, then for its language alone.
+     *
+     * @param pLocale
+     *                    the locale.
+     * @return the rules, which have no category but other if the language is
+     *         not known.
+     */
+    public static PluralRules forLocale(Locale pLocale) {
+        PluralRules rules = null;
+        if (!pLocale.getCountry().isEmpty()) {
+            rules = RULES.get(pLocale.getLanguage() + "-" + pLocale.getCountry());
+        }
+        if (rules == null) {
+            rules = RULES.get(pLocale.getLanguage());
+        }
+        return rules == null ? ROOT : rules;
+    }
+
+    private final String languageTag;
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    private PluralRules(String pLanguageTag) {
+        languageTag = pLanguageTag;
+    }
+
+    private PluralRules add(PluralCategory pCategory, String pSource) {
+        rules.add(new Rule(pCategory, pSource));
+        return this;
+    }
+
+    /**
+     * @return the language tag the rules were defined for, empty for the
+     *         rules of unknown languages.
+     */
+    public String getLanguageTag() {
+        return languageTag;
+    }
+
+    /**
+     * @return the rule of each category but other, which matches the numbers
+     *         no rule matches.
+     */
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * @param pCategory
+     *                      a plural category.
+     * @return true if the category is used by the language.
+     */
+    public boolean hasCategory(PluralCategory pCategory) {
+        if (pCategory == PluralCategory.OTHER) {
+            return true;
+        }
+        for (Rule rule : rules) {
+            if (rule.getCategory() == pCategory) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the absolute value of a number, which the rules are matched
+     * against. {@link Long#MIN_VALUE} has no positive counterpart, so it is
+     * mapped to a smaller positive number with the same remainders for every
+     * modulus the rules may use.
+     *
+     * @param pNumber
+     *                    the number.
+     * @return a non negative number belonging to the same categories.
+     */
+    public static long magnitude(long pNumber) {
+        if (pNumber == Long.MIN_VALUE) {
+            return -(pNumber + MAGNITUDE_MODULUS);
+        }
+        return pNumber < 0 ? -pNumber : pNumber;
+    }
+
+    /**
+     * @param pNumber
+     *                    the number.
+     * @return the category of the number.
+     */
+    public PluralCategory select(long pNumber) {
+        long number = magnitude(pNumber);
+        for (Rule rule : rules) {
+            if (rule.matches(number)) {
+                return rule.getCategory();
+            }
+        }
+        return PluralCategory.OTHER;
+    }
+
+    @Override
+    public String toString() {
+        return languageTag + rules;
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records the metrics of a message bundle in striped counters, so concurrent
+ * updates do not contend on the hot paths.
+ */
+public final class StripedMessageBundleMetrics
+        implements MessageBundleMetrics, MessageBundleMetricsMXBean {
+
+    /**
+     * The number of buckets of the formatting latency histogram. The last one
+     * holds the calls slower than about one second.
+     */
+    private static final int BUCKETS = 31;
+
+    private static final System.Logger LOGGER = System
+            .getLogger(StripedMessageBundleMetrics.class.getName());
+
+    private static LongAdder[] createAdders(int pLength) {
+        LongAdder[] adders = new LongAdder[pLength];
+        for (int i = 0; i < pLength; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Creates the metrics of a message bundle and registers them with the
+     * platform MBean server. A bundle registered already, for example by
+     * another class loader, keeps its registration.
+     *
+     * @param pBundleName
+     *                          the qualified name of the message bundle
+     *                          interface.
+     * @param pLanguageTags
+     *                          the locales of the message bundle, the default
+     *                          one first.
+     * @return the new metrics.
+     */
+    public static StripedMessageBundleMetrics register(String pBundleName,
+            String[] pLanguageTags) {
+        StripedMessageBundleMetrics metrics = new StripedMessageBundleMetrics(
+                pBundleName, pLanguageTags);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("br.com.c8tech.jlib.i18n:type=MessageBundle,name="
+                            + ObjectName.quote(pBundleName)));
+        } catch (InstanceAlreadyExistsException e) {
+            // keeps the first registration
+        } catch (JMException e) {
+            LOGGER.log(System.Logger.Level.WARNING,
+                    "Can't register the metrics of " + pBundleName, e);
+        }
+        return metrics;
+    }
+
+    private static long[] sum(LongAdder[] pAdders) {
+        return Arrays.stream(pAdders).mapToLong(LongAdder::sum).toArray();
+    }
+
+    private final String bundleName;
+
+    private final LongAdder cacheHits = new LongAdder();
+
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder fallbacks = new LongAdder();
+
+    private final LongAdder[] formattings;
+
+    private final LongAdder[] histogram = createAdders(BUCKETS);
+
+    private final String[] languageTags;
+
+    private final LongAdder loadNanos = new LongAdder();
+
+    private final LongAdder[] lookups;
+
+    private final LongAdder missingKeys = new LongAdder();
+
+    public StripedMessageBundleMetrics(String pBundleName,
+            String[] pLanguageTags) {
+        bundleName = pBundleName;
+        languageTags = pLanguageTags.clone();
+        lookups = createAdders(pLanguageTags.length);
+        formattings = createAdders(pLanguageTags.length);
+    }
+
+    @Override
+    public String getBundleName() {
+        return bundleName;
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public long[] getFormattingCounts() {
+        return sum(formattings);
+    }
+
+    @Override
+    public long[] getFormattingLatencyHistogram() {
+        return sum(histogram);
+    }
+
+    @Override
+    public String[] getLanguageTags() {
+        return languageTags.clone();
+    }
+
+    @Override
+    public long getLoadNanos() {
+        return loadNanos.sum();
+    }
+
+    @Override
+    public long[] getLookupCounts() {
+        return sum(lookups);
+    }
+
+    @Override
+    public long getMissingKeys() {
+        return missingKeys.sum();
+    }
+
+    @Override
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void recordCacheMiss(long pLoadNanos) {
+        cacheMisses.increment();
+        loadNanos.add(pLoadNanos);
+    }
+
+    @Override
+    public void recordEviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public void recordFallback(Locale pLocale) {
+        fallbacks.increment();
+    }
+
+    @Override
+    public void recordFormatting(int pLocaleIndex, long pStarted) {
+        long elapsed = Math.max(0, System.nanoTime() - pStarted);
+        lookups[pLocaleIndex].increment();
+        formattings[pLocaleIndex].increment();
+        histogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(elapsed))]
+                .increment();
+    }
+
+    @Override
+    public void recordLookup(int pLocaleIndex) {
+        lookups[pLocaleIndex].increment();
+    }
+
+    @Override
+    public void recordMissingKey(String pKey) {
+        missingKeys.increment();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[] { cacheHits, cacheMisses,
+                evictions, fallbacks, loadNanos, missingKeys }) {
+            adder.reset();
+        }
+        Arrays.stream(lookups).forEach(LongAdder::reset);
+        Arrays.stream(formattings).forEach(LongAdder::reset);
+        Arrays.stream(histogram).forEach(LongAdder::reset);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes characters as UTF-8 straight into a {@link ByteBuffer}, so the
+ * generated methods writing into buffers never build an intermediate string
+ * or byte array.
+ */
+public final class Utf8 {
+
+    private static final byte REPLACEMENT = '?';
+
+    /**
+     * Encodes the characters into the buffer, starting at its position.
+     * Unpaired surrogates are replaced by {@code '?'}, as
+     * {@link String#getBytes(java.nio.charset.Charset)} does, and
+     * {@code null} is written as {@code "null"}, as
+     * {@link StringBuilder#append(CharSequence)} does. The buffer may hold
+     * part of the characters when it overflows.
+     *
+     * @param pChars
+     *                    the characters to encode, may be {@code null}.
+     * @param pBuffer
+     *                    the target buffer.
+     * @throws BufferOverflowException
+     *                                     if the buffer has not enough space
+     *                                     left.
+     */
+    public static void encode(CharSequence pChars, ByteBuffer pBuffer) {
+        if (pChars == null) {
+            encode("null", pBuffer);
+            return;
+        }
+        int length = pChars.length();
+        for (int i = 0; i < length; i++) {
+            char c = pChars.charAt(i);
+            if (!Character.isSurrogate(c)) {
+                put(c, pBuffer);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(pChars.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, pChars.charAt(++i));
+                pBuffer.put((byte) (0xF0 | codePoint >> 18));
+                pBuffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                pBuffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                pBuffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                pBuffer.put(REPLACEMENT);
+            }
+        }
+    }
+
+    /**
+     * Encodes a single character into the buffer. A surrogate is replaced by
+     * {@code '?'}, since it has no pair.
+     *
+     * @param pChar
+     *                    the character to encode.
+     * @param pBuffer
+     *                    the target buffer.
+     * @throws BufferOverflowException
+     *                                     if the buffer has not enough space
+     *                                     left.
+     */
+    public static void encode(char pChar, ByteBuffer pBuffer) {
+        if (Character.isSurrogate(pChar)) {
+            pBuffer.put(REPLACEMENT);
+        } else {
+            put(pChar, pBuffer);
+        }
+    }
+
+    private static void put(char pChar, ByteBuffer pBuffer) {
+        if (pChar < 0x80) {
+            pBuffer.put((byte) pChar);
+        } else if (pChar < 0x800) {
+            pBuffer.put((byte) (0xC0 | pChar >> 6));
+            pBuffer.put((byte) (0x80 | pChar & 0x3F));
+        } else {
+            pBuffer.put((byte) (0xE0 | pChar >> 12));
+            pBuffer.put((byte) (0x80 | pChar >> 6 & 0x3F));
+            pBuffer.put((byte) (0x80 | pChar & 0x3F));
+        }
+    }
+
+    private Utf8() {
+    }
+}
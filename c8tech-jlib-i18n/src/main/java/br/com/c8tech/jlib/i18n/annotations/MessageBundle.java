@@ -29,6 +29,17 @@ public @interface MessageBundle {
      */
     String locale() default "en-US";
 
+    /**
+     * Whether the methods returning a {@link Throwable} build lightweight
+     * exceptions. Those don't capture a stack trace and only format their
+     * message when {@link Throwable#getMessage()} is first called, which suits
+     * exceptions thrown frequently for control flow. The exception classes
+     * must not be final.
+     *
+     * @return true to build exceptions without stack traces.
+     */
+    boolean lightweightExceptions() default false;
+
     /**
      * Returns the base path to properties files for this message bundle. If
      * nothing is specified, the base path will be the qualified class name of
@@ -0,0 +1,52 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CompactBundleTest {
+
+    @Test
+    public void ensureWrittenBundleIsReadBack() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new CompactBundleWriter(List.of("m1", "m2"))
+                .addLocale("en-US", List.of("worked {0}!", "static"))
+                .addLocale("pt-BR", List.of("funcionou {0}!", "static"))
+                .write(output);
+
+        CompactBundle bundle = CompactBundle
+                .wrap(ByteBuffer.wrap(output.toByteArray()));
+
+        assertThat(bundle.getKeyCount()).isEqualTo(2);
+        assertThat(bundle.getLocaleCount()).isEqualTo(2);
+        assertThat(bundle.getKeys()).containsExactly("m1", "m2");
+        assertThat(bundle.getLanguageTag(1)).isEqualTo("pt-BR");
+        assertThat(bundle.getMessage(1, 0)).isEqualTo("funcionou {0}!");
+
+        MessageTable table = bundle.getTable(0, bundle.getKeys());
+        assertThat(table.get(1)).isEqualTo("static");
+        assertThat(table.indexOf("m2")).isEqualTo(1);
+    }
+
+    @Test
+    public void ensureInvalidBufferIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CompactBundle.wrap(ByteBuffer.allocate(32)));
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class DigitsTest {
+
+    @Test
+    public void ensureDigitsMatchLongToString() throws IOException {
+        long[] values = { 0, 7, -7, 10, 99, -100, Integer.MAX_VALUE,
+                Integer.MIN_VALUE, 1_000_000_000_000_000_000L, Long.MAX_VALUE,
+                Long.MIN_VALUE };
+        for (long value : values) {
+            StringBuilder appended = new StringBuilder();
+            Digits.append(value, appended);
+            ByteBuffer buffer = ByteBuffer.allocate(20);
+            Digits.encode(value, buffer);
+            buffer.flip();
+
+            assertThat(appended.toString()).isEqualTo(Long.toString(value));
+            assertThat(StandardCharsets.US_ASCII.decode(buffer).toString())
+                    .isEqualTo(Long.toString(value));
+        }
+    }
+}
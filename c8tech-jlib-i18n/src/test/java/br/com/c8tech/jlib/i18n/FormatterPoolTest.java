@@ -0,0 +1,57 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+public class FormatterPoolTest {
+
+    @Test
+    public void ensureFormattersAreReusedPerThread() throws Exception {
+        MessageFormat format = FormatterPool.getMessageFormat(Locale.US,
+                "{0,number}");
+
+        assertThat(FormatterPool.getMessageFormat(Locale.US, "{0,number}"))
+                .isSameAs(format);
+        assertThat(FormatterPool.getNumberFormat(Locale.US, "integer"))
+                .isSameAs(FormatterPool.getNumberFormat(Locale.US,
+                        "integer"));
+        MessageFormat other = CompletableFuture.supplyAsync(
+                () -> FormatterPool.getMessageFormat(Locale.US, "{0,number}"))
+                .get();
+        assertThat(other).isNotSameAs(format).isEqualTo(format);
+        assertThat(FormatterPool.getMessageFormat(Locale.GERMANY,
+                "{0,number}").format(new Object[] { 1234.5 }))
+                        .isEqualTo("1.234,5");
+    }
+
+    @Test
+    public void ensureNumberFormatsAreSelectedLikeMessageFormat() {
+        Locale ptBr = Locale.forLanguageTag("pt-BR");
+        for (String style : new String[] { null, "integer", " Percent ",
+                "currency", "#,##0.0#" }) {
+            String pattern = style == null ? "{0,number}"
+                    : "{0,number," + style + "}";
+
+            assertThat(FormatterPool.getNumberFormat(ptBr, style)
+                    .format(1234.567)).isEqualTo(
+                            new MessageFormat(pattern, ptBr).format(
+                                    new Object[] { 1234.567 }));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyMessageTest {
+
+    @Test
+    public void ensureMessageIsFormattedOnFirstUseOnly() {
+        AtomicInteger formatted = new AtomicInteger();
+        LazyMessage message = new LazyMessage() {
+            @Override
+            protected String format() {
+                formatted.incrementAndGet();
+                return "worked";
+            }
+        };
+
+        assertThat(formatted).hasValue(0);
+        assertThat(message.length()).isEqualTo(6);
+        assertThat(message.toString()).isEqualTo("worked");
+        assertThat(message.subSequence(0, 4)).isEqualTo("work");
+        assertThat(formatted).hasValue(1);
+    }
+}
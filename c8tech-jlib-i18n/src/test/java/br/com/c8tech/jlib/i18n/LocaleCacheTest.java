@@ -0,0 +1,88 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.c8tech.jlib.i18n.LocaleCache.EvictionPolicy;
+
+public class LocaleCacheTest {
+
+    @Test
+    public void ensurePinnedCacheLoadsEachLocaleOnce() {
+        LocaleCache<String> cache = new LocaleCache<>(EvictionPolicy.PINNED,
+                2);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.get(Locale.FRANCE, l -> {
+                loads.incrementAndGet();
+                return l.toLanguageTag();
+            })).isEqualTo("fr-FR");
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void ensureBoundedCacheEvictsOtherLocales() {
+        LocaleCache<String> cache = new LocaleCache<>(EvictionPolicy.BOUNDED,
+                2);
+
+        cache.get(Locale.FRANCE, Locale::toLanguageTag);
+        cache.get(Locale.GERMANY, Locale::toLanguageTag);
+        cache.get(Locale.ITALY, Locale::toLanguageTag);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(Locale.ITALY, l -> "reloaded"))
+                .isEqualTo("it-IT");
+    }
+
+    @Test
+    public void ensureLocalesResolvedAlikeShareTheirValue() {
+        LocaleCache<String> cache = new LocaleCache<>(EvictionPolicy.PINNED,
+                2);
+        AtomicInteger resolutions = new AtomicInteger();
+        AtomicInteger loads = new AtomicInteger();
+
+        for (Locale locale : new Locale[] { Locale.US, Locale.CANADA,
+                Locale.UK, Locale.US }) {
+            assertThat(cache.get(locale, l -> {
+                resolutions.incrementAndGet();
+                return 0;
+            }, i -> {
+                loads.incrementAndGet();
+                return "en";
+            })).isEqualTo("en");
+        }
+
+        assertThat(resolutions).hasValue(3);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void ensureSoftCacheReturnsCachedValue() {
+        LocaleCache<String> cache = new LocaleCache<>(EvictionPolicy.SOFT, 2);
+
+        String value = cache.get(Locale.FRANCE, l -> new String("fr"));
+
+        assertThat(cache.get(Locale.FRANCE, l -> "reloaded"))
+                .isSameAs(value);
+    }
+}
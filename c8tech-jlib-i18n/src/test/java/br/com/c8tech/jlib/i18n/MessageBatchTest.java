@@ -0,0 +1,69 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class MessageBatchTest {
+
+    @Test
+    public void ensureEntriesAreGroupedByLocale() {
+        MessageBatch batch = MessageBatch.of(Locale.US, Locale.FRANCE,
+                Locale.US, Locale.GERMANY, Locale.FRANCE);
+        List<String> groups = new ArrayList<>();
+
+        batch.run((locale, indexes, from, to) -> groups.add(locale + "="
+                + Arrays.toString(Arrays.copyOfRange(indexes, from, to))));
+
+        assertThat(batch.size()).isEqualTo(5);
+        assertThat(batch.getLocaleCount()).isEqualTo(3);
+        assertThat(groups).containsExactly("en_US=[0, 2]", "fr_FR=[1, 4]",
+                "de_DE=[3]");
+        assertThatThrownBy(() -> batch.checkColumn(4))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Expected 5 arguments but got 4");
+    }
+
+    @Test
+    public void ensureParallelBatchesRenderEveryEntryOnce() {
+        Locale[] locales = new Locale[MessageBatch.CHUNK_SIZE * 3 + 7];
+        for (int i = 0; i < locales.length; i++) {
+            locales[i] = i % 3 == 0 ? Locale.US : Locale.ITALY;
+        }
+        int[] rendered = new int[locales.length];
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MessageBatch.of(locales).parallel(pool)
+                    .run((locale, indexes, from, to) -> {
+                        assertThat(to - from)
+                                .isLessThanOrEqualTo(MessageBatch.CHUNK_SIZE);
+                        for (int i = from; i < to; i++) {
+                            assertThat(locales[indexes[i]]).isEqualTo(locale);
+                            rendered[indexes[i]]++;
+                        }
+                    });
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(rendered).containsOnly(1);
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MessageBundleReloaderTest {
+
+    private static final class Bundle extends AbstractMessageBundle {
+
+        private Bundle(Locale pLocale, MessageBundleReloader pReloader) {
+            super(pLocale, new MessageTable(
+                    resolveLocaleIndex(pLocale, "en-US", "pt-BR"),
+                    new String[] { "a", "b" },
+                    new String[] { "first", "second {0}" }), pReloader);
+        }
+    }
+
+    private static final class ChainedBundle extends AbstractMessageBundle {
+
+        private ChainedBundle(Locale pLocale,
+                MessageBundleReloader pReloader) {
+            super(pLocale, new MessageTable(
+                    resolveLocaleIndex(pLocale, "en-US", "pt", "pt-BR"),
+                    new String[] { "a", "b" },
+                    new String[] { "primeiro BR", "segundo {0}" }),
+                    pReloader);
+        }
+    }
+
+    private static void replace(Path pFile, String pContent)
+            throws IOException {
+        Path temporary = pFile.resolveSibling(pFile.getFileName() + ".tmp");
+        Files.writeString(temporary, pContent, StandardCharsets.UTF_8);
+        Files.move(temporary, pFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void waitFor(Bundle pBundle, String pExpected)
+            throws InterruptedException {
+        for (int i = 0; i < 100
+                && !pExpected.equals(pBundle.getMessage(0)); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void ensureChangedFilesAreReloaded(@TempDir Path pDirectory)
+            throws Exception {
+        MessageBundleReloader reloader = new MessageBundleReloader("Bundle",
+                new String[] { "en-US", "pt-BR" }, new String[] { "a", "b" });
+        Bundle bundle = new Bundle(Locale.forLanguageTag("pt-BR"), reloader);
+        Path file = pDirectory.resolve("Bundle_pt-BR.properties");
+        Files.writeString(file, "a=primeiro\n", StandardCharsets.UTF_8);
+
+        try (MessageBundleReloader watching = reloader.watch(pDirectory)) {
+            assertThat(bundle.getMessage(0)).isEqualTo("primeiro");
+            assertThat(bundle.getMessage(1)).isEqualTo("second {0}");
+            assertThat(StandardCharsets.UTF_8
+                    .decode(bundle.getMessageUtf8(0)).toString())
+                            .isEqualTo("primeiro");
+
+            replace(file, "a=ação\nb=segundo {0}\n");
+            waitFor(bundle, "ação");
+            assertThat(bundle.getMessage(0)).isEqualTo("ação");
+            assertThat(bundle.getReloadedTemplate(1)
+                    .format(bundle.getLocale(), "x")).isEqualTo("segundo x");
+
+            // a malformed file keeps the templates loaded before
+            replace(file, "a={0\n");
+            Thread.sleep(500);
+            assertThat(bundle.getMessage(0)).isEqualTo("ação");
+
+            Files.delete(file);
+            waitFor(bundle, "first");
+            assertThat(bundle.getMessage(0)).isEqualTo("first");
+        }
+        assertThat(reloader.isWatching()).isFalse();
+        assertThat(new Bundle(Locale.US, reloader).getMessage(0))
+                .isEqualTo("first");
+    }
+
+    @Test
+    public void ensureReloadedParentsReachTheirChildren(
+            @TempDir Path pDirectory) throws Exception {
+        // pt-BR has its own message for a and inherited b from pt
+        MessageBundleReloader reloader = new MessageBundleReloader("Bundle",
+                new String[] { "en-US", "pt", "pt-BR" },
+                new String[] { "a", "b" }, new int[][] { {}, {}, { 1 } },
+                new int[][] { { 0, 0 }, { 1, 1 }, { 2, 1 } });
+        ChainedBundle bundle = new ChainedBundle(
+                Locale.forLanguageTag("pt-BR"), reloader);
+        Files.writeString(pDirectory.resolve("Bundle_pt.properties"),
+                "a=primeiro\nb=recarregado {0}\n", StandardCharsets.UTF_8);
+
+        reloader.reload(pDirectory);
+        assertThat(bundle.getMessage(0)).isEqualTo("primeiro BR");
+        assertThat(bundle.getMessage(1)).isEqualTo("recarregado {0}");
+        assertThat(bundle.getReloadedTemplate(1)
+                .format(bundle.getLocale(), "x")).isEqualTo("recarregado x");
+
+        // the file of the locale itself still wins over its parent
+        Files.writeString(pDirectory.resolve("Bundle_pt-BR.properties"),
+                "b=recarregado BR {0}\n", StandardCharsets.UTF_8);
+        reloader.reload(pDirectory);
+        assertThat(bundle.getMessage(1)).isEqualTo("recarregado BR {0}");
+        assertThat(bundle.getMessage(0)).isEqualTo("primeiro BR");
+    }
+
+    @Test
+    public void ensureReloadedStaticMessagesAreRendered(
+            @TempDir Path pDirectory) throws Exception {
+        MessageBundleReloader reloader = new MessageBundleReloader("Bundle",
+                new String[] { "en-US", "pt-BR" }, new String[] { "a", "b" });
+        Bundle bundle = new Bundle(Locale.US, reloader);
+        Files.writeString(pDirectory.resolve("Bundle_en-US.properties"),
+                "a=It''s '{'static'}'\nb=It''s {0}\n",
+                StandardCharsets.UTF_8);
+
+        try (MessageBundleReloader watching = reloader.watch(pDirectory)) {
+            assertThat(bundle.getMessage(0)).isEqualTo("It's {static}");
+            ByteBuffer encoded = bundle.getMessageUtf8(0);
+            byte[] bytes = new byte[encoded.remaining()];
+            encoded.get(bytes);
+            assertThat(bytes).isEqualTo(
+                    "It's {static}".getBytes(StandardCharsets.UTF_8));
+            assertThat(bundle.getMessage(1)).isEqualTo("It''s {0}");
+            assertThat(bundle.getReloadedTemplate(1)
+                    .format(bundle.getLocale(), "x")).isEqualTo("It's x");
+        }
+    }
+}
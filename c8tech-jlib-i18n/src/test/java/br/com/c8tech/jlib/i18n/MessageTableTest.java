@@ -0,0 +1,53 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class MessageTableTest {
+
+    @Test
+    public void ensureMessagesAreMaterializedOnFirstUseOnly() {
+        AtomicInteger materialized = new AtomicInteger();
+        MessageTable table = new MessageTable(0, new String[] { "a", "b" },
+                i -> {
+                    materialized.incrementAndGet();
+                    return "message " + i;
+                });
+
+        assertThat(materialized).hasValue(0);
+        assertThat(table.get(1)).isEqualTo("message 1");
+        assertThat(table.get(1)).isEqualTo("message 1");
+        assertThat(materialized).hasValue(1);
+        assertThat(table.indexOf("b")).isEqualTo(1);
+    }
+
+    @Test
+    public void ensureEncodingIsKeptAndSharedReadOnly() {
+        MessageTable table = new MessageTable(0, new String[] { "a" },
+                new String[] { "ação" });
+
+        ByteBuffer first = table.getUtf8(0);
+        first.get();
+        ByteBuffer second = table.getUtf8(0);
+
+        assertThat(second.isReadOnly()).isTrue();
+        assertThat(second.remaining())
+                .isEqualTo("ação".getBytes(StandardCharsets.UTF_8).length);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.text.MessageFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void ensureTemplatesAreSplitIntoTokens() {
+        MessageTemplate template = MessageTemplate
+                .parse("it''s '{literal}' {0} and { 11 }");
+
+        assertThat(template.getTokens()).extracting(
+                MessageTemplate.Token::getText).containsExactly(
+                        "it's {literal} ", "{0}", " and ", "{ 11 }");
+        assertThat(template.getArgumentCount()).isEqualTo(12);
+        assertThat(template.isTyped()).isFalse();
+        assertThat(template.format(Locale.ROOT, "a", "b", "c", "d", "e", "f",
+                "g", "h", "i", "j", "k", "l"))
+                        .isEqualTo("it's {literal} a and l");
+    }
+
+    @Test
+    public void ensureTypedElementsAreFormattedLikeMessageFormat() {
+        MessageTemplate template = MessageTemplate.parse(
+                "{0,choice,0#no files|1#one file|1<{0,number,integer} files} in {1}");
+
+        assertThat(template.isTyped()).isTrue();
+        assertThat(template.getTokens().get(0).getFormatType())
+                .isEqualTo("choice");
+        assertThat(template.getTokens().get(0).getFormatStyle())
+                .isEqualTo("0#no files|1#one file|1<{0,number,integer} files");
+        assertThat(template.format(Locale.US, 1234, "disk"))
+                .isEqualTo("1,234 files in disk");
+    }
+
+    @Test
+    public void ensureUntypedElementsIgnoreTheTypedOnes() {
+        Date midnight = new Date(0);
+        String time = new MessageFormat("{0,time}", Locale.US)
+                .format(new Object[] { midnight });
+
+        assertThat(MessageTemplate.parse("{0} items").format(Locale.US, 1234))
+                .isEqualTo("1234 items");
+        assertThat(MessageTemplate.parse("{0} items at {1,time}")
+                .format(Locale.US, 1234, midnight))
+                        .isEqualTo("1234 items at " + time);
+    }
+
+    @Test
+    public void ensurePluralAndSelectCasesAreChosenByTheirArgument() {
+        MessageTemplate template = MessageTemplate.parse(
+                "{1,select,female{She} other{They}} found "
+                        + "{0,plural,=0{no files} one{# file} other{# '#' files}}");
+
+        assertThat(template.isBranched()).isTrue();
+        assertThat(template.getTokens().get(0).getCases()).containsOnlyKeys(
+                "female", "other");
+        assertThat(template.flattenTokens()
+                .filter(MessageTemplate.Token::isArgument))
+                        .extracting(MessageTemplate.Token::getText)
+                        .containsExactly("{1,select,female{She} other{They}}",
+                                "{0,plural,=0{no files} one{# file} other{# '#' files}}",
+                                "{0,number}", "{0,number}");
+        assertThat(template.format(Locale.US, 0, "female"))
+                .isEqualTo("She found no files");
+        assertThat(template.format(Locale.US, 1, "male"))
+                .isEqualTo("They found 1 file");
+        assertThat(template.format(Locale.US, 1234, "male"))
+                .isEqualTo("They found 1,234 # files");
+        assertThat(template.format(Locale.US, 1.5, "male"))
+                .isEqualTo("They found 1.5 # files");
+    }
+
+    @Test
+    public void ensurePluralCasesFollowTheLanguageOfTheTemplate() {
+        String pattern = "{0,plural,one{# arquivo} other{# arquivos}}";
+
+        // Portuguese of Brazil counts zero as one, English does not
+        assertThat(MessageTemplate.parse(pattern, "pt-BR")
+                .format(Locale.US, 0)).isEqualTo("0 arquivo");
+        assertThat(MessageTemplate.parse(pattern).format(Locale.US, 0))
+                .isEqualTo("0 arquivos");
+    }
+
+    @Test
+    public void ensureMalformedTemplatesAreRejected() {
+        assertThatThrownBy(() -> MessageTemplate.parse("{0"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unmatched braces");
+        assertThatThrownBy(() -> MessageTemplate.parse("{a}"))
+                .hasMessageContaining("Can't parse argument number");
+        assertThatThrownBy(() -> MessageTemplate.parse("{0,money}"))
+                .hasMessageContaining("Unknown format type 'money'");
+        assertThatThrownBy(() -> MessageTemplate.parse("{0,plural,one{a}}"))
+                .hasMessageContaining("Missing 'other' case");
+        assertThatThrownBy(
+                () -> MessageTemplate.parse("{0,plural,some{a} other{b}}"))
+                        .hasMessageContaining("Invalid plural case 'some'");
+    }
+}
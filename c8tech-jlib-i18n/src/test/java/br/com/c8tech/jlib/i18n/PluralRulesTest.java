@@ -0,0 +1,77 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+public class PluralRulesTest {
+
+    @Test
+    public void ensureNumbersAreSelectedByTheRulesOfTheLanguage() {
+        PluralRules russian = PluralRules.forLocale(new Locale("ru", "RU"));
+        assertThat(russian.getLanguageTag()).isEqualTo("ru");
+        assertThat(russian.select(1)).isEqualTo(PluralCategory.ONE);
+        assertThat(russian.select(-21)).isEqualTo(PluralCategory.ONE);
+        assertThat(russian.select(3)).isEqualTo(PluralCategory.FEW);
+        assertThat(russian.select(11)).isEqualTo(PluralCategory.MANY);
+        assertThat(russian.select(112)).isEqualTo(PluralCategory.MANY);
+
+        assertThat(PluralRules.forLanguageTag("pt-BR").select(0))
+                .isEqualTo(PluralCategory.ONE);
+        assertThat(PluralRules.forLanguageTag("pt-PT").select(0))
+                .isEqualTo(PluralCategory.OTHER);
+        assertThat(PluralRules.forLanguageTag("fr").select(2000000))
+                .isEqualTo(PluralCategory.MANY);
+        assertThat(PluralRules.forLanguageTag("ja").select(1))
+                .isEqualTo(PluralCategory.OTHER);
+        assertThat(PluralRules.forLanguageTag("ja").getRules()).isEmpty();
+
+        PluralRules romanian = PluralRules.forLanguageTag("ro");
+        assertThat(romanian.select(0)).isEqualTo(PluralCategory.FEW);
+        assertThat(romanian.select(19)).isEqualTo(PluralCategory.FEW);
+        assertThat(romanian.select(20)).isEqualTo(PluralCategory.OTHER);
+        assertThat(romanian.select(101)).isEqualTo(PluralCategory.OTHER);
+        assertThat(romanian.select(102)).isEqualTo(PluralCategory.FEW);
+    }
+
+    @Test
+    public void ensureTheMinimumLongKeepsItsCategory() {
+        long magnitude = PluralRules.magnitude(Long.MIN_VALUE);
+
+        assertThat(magnitude).isPositive();
+        assertThat(magnitude % 1_000_000).isEqualTo(
+                -(Long.MIN_VALUE % 1_000_000));
+        assertThat(PluralRules.magnitude(-5)).isEqualTo(5);
+        // ...775808 is "many" in Russian, as its last digit is 8
+        assertThat(PluralRules.forLanguageTag("ru").select(Long.MIN_VALUE))
+                .isEqualTo(PluralCategory.MANY);
+        assertThat(PluralRules.forLanguageTag("fr").select(Long.MIN_VALUE))
+                .isEqualTo(PluralCategory.OTHER);
+    }
+
+    @Test
+    public void ensureRulesAreTranslatedIntoJavaExpressions() {
+        PluralRules polish = PluralRules.forLanguageTag("pl");
+
+        assertThat(polish.getRules()).extracting(
+                r -> r.toJavaExpression("n")).containsExactly("n == 1",
+                        "(n % 10 >= 2 && n % 10 <= 4) && !(n % 100 >= 12 && n % 100 <= 14)",
+                        "n != 1 && (n % 10 >= 0 && n % 10 <= 1) || (n % 10 >= 5 && n % 10 <= 9) || (n % 100 >= 12 && n % 100 <= 14)");
+        for (long n = 0; n < 300; n++) {
+            assertThat(polish.hasCategory(polish.select(n))).isTrue();
+        }
+    }
+}
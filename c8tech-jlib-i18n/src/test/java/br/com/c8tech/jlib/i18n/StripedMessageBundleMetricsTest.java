@@ -0,0 +1,94 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.MissingResourceException;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.c8tech.jlib.i18n.LocaleCache.EvictionPolicy;
+
+public class StripedMessageBundleMetricsTest {
+
+    private static final class Bundle extends AbstractMessageBundle {
+
+        private Bundle(Locale pLocale, LocaleCache<MessageTable> pTables,
+                MessageBundleMetrics pMetrics) {
+            super(pLocale, pTables.get(pLocale,
+                    l -> new MessageTable(
+                            resolveLocaleIndex(l, pMetrics, "en-US", "pt-BR"),
+                            new String[] { "a" }, new String[] { "first" })),
+                    null, pMetrics);
+        }
+
+        private String format() {
+            long started = startFormatting();
+            try {
+                return getMessage(0) + "!";
+            } finally {
+                endFormatting(started);
+            }
+        }
+    }
+
+    @Test
+    public void ensureBundleUsageIsRecorded() {
+        StripedMessageBundleMetrics metrics = new StripedMessageBundleMetrics(
+                "x.Bundle", new String[] { "en-US", "pt-BR" });
+        LocaleCache<MessageTable> tables = new LocaleCache<>(
+                EvictionPolicy.BOUNDED, 1, metrics);
+
+        Bundle english = new Bundle(Locale.US, tables, metrics);
+        english.getMessage(0);
+        english.getMessage(0);
+        new Bundle(Locale.US, tables, metrics);
+        Bundle brazilian = new Bundle(Locale.forLanguageTag("pt-BR"), tables,
+                metrics);
+        brazilian.format();
+        new Bundle(Locale.JAPAN, tables, metrics);
+        assertThatThrownBy(() -> brazilian.getMessage("b"))
+                .isInstanceOf(MissingResourceException.class);
+
+        assertThat(metrics.getLookupCounts()).containsExactly(2, 2);
+        assertThat(metrics.getFormattingCounts()).containsExactly(0, 1);
+        assertThat(metrics.getFormattingLatencyHistogram()).hasSize(31)
+                .matches(h -> Arrays.stream(h).sum() == 1);
+        assertThat(metrics.getCacheHits()).isEqualTo(1);
+        assertThat(metrics.getCacheMisses()).isEqualTo(3);
+        assertThat(metrics.getEvictions()).isEqualTo(2);
+        assertThat(metrics.getFallbacks()).isEqualTo(1);
+        assertThat(metrics.getMissingKeys()).isEqualTo(1);
+
+        metrics.reset();
+        assertThat(metrics.getLookupCounts()).containsExactly(0, 0);
+        assertThat(metrics.getCacheMisses()).isZero();
+    }
+
+    @Test
+    public void ensureMetricsAreRegisteredAsMXBeans() throws Exception {
+        StripedMessageBundleMetrics.register("x.Registered",
+                new String[] { "en-US" }).recordLookup(0);
+
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName("br.com.c8tech.jlib.i18n:type=MessageBundle,name="
+                        + ObjectName.quote("x.Registered")),
+                "LookupCounts")).isEqualTo(new long[] { 1 });
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * ============================================================================
+ *  Copyright ©  2015-2019,    Cristiano V. Gavião
+ *
+ *  All rights reserved.
+ *  This program and the accompanying materials are made available under
+ *  the terms of the Eclipse Public License v1.0 which accompanies this
+ *  distribution and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * ============================================================================
+ */
+package br.com.c8tech.jlib.i18n;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class Utf8Test {
+
+    @Test
+    public void ensureEncodingMatchesTheJdk() {
+        String text = "ação € 😀 \uD800 end";
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        Utf8.encode(text, buffer);
+
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position()))
+                .isEqualTo(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void ensureNullIsEncodedAsText() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+
+        Utf8.encode(null, buffer);
+
+        assertThat(Arrays.copyOf(buffer.array(), buffer.position()))
+                .isEqualTo("null".getBytes(StandardCharsets.UTF_8));
+    }
+}